@@ -0,0 +1,76 @@
+package org.xhtmlrenderer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xhtmlrenderer.css.newmatch.CascadedStyle;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.style.EmptyStyle;
+import org.xhtmlrenderer.css.style.derived.DerivedValuePool;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+/**
+ * Derives {@link org.xhtmlrenderer.css.style.CalculatedStyle}s for a few hundred rule sets
+ * with colors and lengths, with and without the {@link DerivedValuePool}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CalculatedStyleBenchmark {
+    private static final String[] COLORS = {"#000", "#333", "#fff", "red", "#336699", "rgb(0, 128, 0)"};
+    private static final String[] LENGTHS = {"0", "1px", "2px", "4px", "8px", "1cm", "12pt"};
+
+    private final List<CascadedStyle> styles = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        CSSParser parser = new CSSParser((uri, message) -> {});
+        for (int i = 0; i < 300; i++) {
+            String css = ("color: %s; background-color: %s; border: %s solid %s; margin: %s %s;" +
+                    " padding: %s; font-size: %s; line-height: 1.4; width: 50%%")
+                    .formatted(COLORS[i % COLORS.length], COLORS[(i / 2) % COLORS.length],
+                            LENGTHS[i % LENGTHS.length], COLORS[(i / 3) % COLORS.length],
+                            LENGTHS[(i / 2) % LENGTHS.length], LENGTHS[(i / 3) % LENGTHS.length],
+                            LENGTHS[(i / 5) % LENGTHS.length], LENGTHS[(i / 7) % LENGTHS.length]);
+            Ruleset ruleset = parser.parseDeclaration(AUTHOR, css);
+            styles.add(CascadedStyle.createLayoutStyle(ruleset.getPropertyDeclarations()));
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    public void withPool(Blackhole blackhole) {
+        derive(blackhole);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dxr.css.derived-value-pool.size=0")
+    public void withoutPool(Blackhole blackhole) {
+        derive(blackhole);
+    }
+
+    private void derive(Blackhole blackhole) {
+        EmptyStyle root = new EmptyStyle();
+        for (CascadedStyle style : styles) {
+            blackhole.consume(root.deriveStyle(style));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.xhtmlrenderer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xhtmlrenderer.css.parser.CSSParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+/**
+ * Parses the declarations of the rules and style attributes of the profiling documents.
+ * Compares reading them through a {@link java.io.Reader} into the lexer's buffer with
+ * tokenizing them in place, with a new parser each, and tokenizing them in place with
+ * one parser, as each thread does in
+ * {@link org.xhtmlrenderer.context.StylesheetFactoryImpl#parseStyleDeclaration}.
+ * Run from the project directory, or set the {@code directory} parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CssLexerBenchmark {
+    private static final Pattern DECLARATIONS = Pattern.compile("\\{([^{}]*)}");
+    private static final Pattern STYLE_ATTRIBUTE = Pattern.compile("style=\"([^\"]*)\"");
+
+    @Param("tests/profiling/xhtml")
+    public String directory = "";
+
+    private final List<String> declarations = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        Path dir = Path.of(directory);
+        collect(DECLARATIONS, Files.readString(dir.resolve("general.css"), UTF_8));
+        String hamlet = Files.readString(dir.resolve("hamlet.xhtml"), UTF_8);
+        collect(DECLARATIONS, hamlet);
+        collect(STYLE_ATTRIBUTE, hamlet);
+    }
+
+    private void collect(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            declarations.add(matcher.group(1));
+        }
+    }
+
+    @Benchmark
+    public void reader(Blackhole blackhole) {
+        for (String declaration : declarations) {
+            blackhole.consume(newParser().parseDeclaration(AUTHOR, new StringReader(declaration)));
+        }
+    }
+
+    @Benchmark
+    public void inPlace(Blackhole blackhole) {
+        for (String declaration : declarations) {
+            blackhole.consume(newParser().parseDeclaration(AUTHOR, declaration));
+        }
+    }
+
+    @Benchmark
+    public void inPlaceWithOneParser(Blackhole blackhole) {
+        CSSParser parser = newParser();
+        for (String declaration : declarations) {
+            blackhole.consume(parser.parseDeclaration(AUTHOR, declaration));
+        }
+    }
+
+    private static CSSParser newParser() {
+        return new CSSParser((uri, message) -> {});
+    }
+}
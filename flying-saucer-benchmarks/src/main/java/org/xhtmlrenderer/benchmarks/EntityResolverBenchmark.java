@@ -0,0 +1,85 @@
+package org.xhtmlrenderer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xhtmlrenderer.resource.FSEntityResolver;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.StringReader;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Parses a small XHTML document with a DOCTYPE, resolving the DTD and its entity sets
+ * from the in-memory copies of {@link FSEntityResolver}, and reading them from the
+ * classpath for every document as it did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityResolverBenchmark {
+    private static final String XHTML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Strict//EN" "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd">
+            <html xmlns="http://www.w3.org/1999/xhtml">
+              <head><title>Invoice</title></head>
+              <body>
+                <h1>Invoice&nbsp;42</h1>
+                <table>
+                  <tr><td>Item</td><td>&euro;&nbsp;10.00</td></tr>
+                  <tr><td>Total</td><td>&euro;&nbsp;10.00</td></tr>
+                </table>
+              </body>
+            </html>
+            """;
+
+    private XMLReader xmlReader;
+    private final EntityResolver cached = FSEntityResolver.instance();
+    private final EntityResolver fromClasspath = (publicId, systemId) -> {
+        String uri = requireNonNull(FSEntityResolver.instance().getEntity(publicId), publicId);
+        URL url = requireNonNull(EntityResolverBenchmark.class.getClassLoader().getResource(uri), uri);
+        InputSource source = new InputSource(url.openStream());
+        source.setSystemId(url.toExternalForm());
+        return source;
+    };
+
+    @Setup
+    public void setUp() throws Exception {
+        xmlReader = XMLResource.newXMLReader();
+        xmlReader.setFeature("http://xml.org/sax/features/namespaces", true);
+        xmlReader.setContentHandler(new DefaultHandler());
+    }
+
+    @Benchmark
+    public XMLReader cached() throws Exception {
+        return parse(cached);
+    }
+
+    @Benchmark
+    public XMLReader fromClasspath() throws Exception {
+        return parse(fromClasspath);
+    }
+
+    private XMLReader parse(EntityResolver resolver) throws Exception {
+        xmlReader.setEntityResolver(resolver);
+        xmlReader.parse(new InputSource(new StringReader(XHTML)));
+        return xmlReader;
+    }
+}
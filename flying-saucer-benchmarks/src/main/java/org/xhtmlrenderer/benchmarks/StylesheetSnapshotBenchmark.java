@@ -0,0 +1,70 @@
+package org.xhtmlrenderer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.USER_AGENT;
+
+/**
+ * Compares parsing the default user agent stylesheet with loading its {@link StylesheetSnapshot}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StylesheetSnapshotBenchmark {
+    private static final String URI = "jar:file:/flying-saucer-core.jar!/resources/css/XhtmlNamespaceHandler.css";
+
+    private String css = "";
+    private String hash = "";
+    private byte[] snapshot = new byte[0];
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = requireNonNull(getClass().getResourceAsStream("/resources/css/XhtmlNamespaceHandler.css"))) {
+            css = new String(in.readAllBytes(), UTF_8);
+        }
+        hash = StylesheetSnapshot.hash(css);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StylesheetSnapshot.write(StylesheetSnapshot.compile(css), hash, out);
+        snapshot = out.toByteArray();
+    }
+
+    @Benchmark
+    public Stylesheet parse() throws IOException {
+        CSSParser parser = new CSSParser((uri, message) -> {});
+        return parser.parseStylesheet(URI, USER_AGENT, new StringReader(css));
+    }
+
+    @Benchmark
+    public Stylesheet readSnapshot() throws IOException {
+        return StylesheetSnapshot.read(new ByteArrayInputStream(snapshot), hash, URI, USER_AGENT, false);
+    }
+
+    @Benchmark
+    public Stylesheet hashAndReadSnapshot() throws IOException {
+        return StylesheetSnapshot.read(new ByteArrayInputStream(snapshot), StylesheetSnapshot.hash(css), URI, USER_AGENT, false);
+    }
+}
@@ -0,0 +1,70 @@
+package org.xhtmlrenderer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.resource.FSEntityResolver;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXSource;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads the Hamlet profiling document, building the DOM straight from the SAX events
+ * as {@link XMLResource} does, and through an identity TrAX transform as it did before.
+ * Run from the project directory, or set the {@code directory} parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XMLResourceBenchmark {
+    @Param("tests/profiling/xhtml")
+    public String directory = "";
+
+    private String hamlet = "";
+    private XMLReader xmlReader;
+    private Transformer transformer;
+
+    @Setup
+    public void setUp() throws Exception {
+        hamlet = Files.readString(Path.of(directory).resolve("hamlet.xhtml"), UTF_8);
+        xmlReader = XMLResource.newXMLReader();
+        xmlReader.setEntityResolver(FSEntityResolver.instance());
+        xmlReader.setFeature("http://xml.org/sax/features/namespaces", true);
+        transformer = TransformerFactory.newInstance().newTransformer();
+    }
+
+    @Benchmark
+    public Document saxToDom() {
+        return XMLResource.load(hamlet).getDocument();
+    }
+
+    @Benchmark
+    public Document identityTransform() throws Exception {
+        DOMResult result = new DOMResult();
+        transformer.transform(new SAXSource(xmlReader, new InputSource(new StringReader(hamlet))), result);
+        return (Document) result.getNode();
+    }
+}
@@ -0,0 +1,4 @@
+@NullMarked
+package org.xhtmlrenderer.benchmarks;
+
+import org.jspecify.annotations.NullMarked;
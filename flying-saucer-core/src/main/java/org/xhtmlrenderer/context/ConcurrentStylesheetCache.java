@@ -0,0 +1,183 @@
+package org.xhtmlrenderer.context;
+
+import org.jspecify.annotations.Nullable;
+import org.xhtmlrenderer.css.sheet.MediaRule;
+import org.xhtmlrenderer.css.sheet.PageRule;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.util.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.util.Comparator.comparingLong;
+
+/**
+ * A {@link StylesheetCache} bounded by the estimated memory of the parsed stylesheets.
+ * <p>
+ * Lookups take no locks. When the limit is exceeded, the least recently used
+ * stylesheets are dropped. Two threads missing the same URI at the same time may
+ * both load it; the first one to finish wins.
+ */
+public class ConcurrentStylesheetCache implements StylesheetCache {
+    private static final long DECLARATION_SIZE = 96;
+    private static final long SELECTOR_SIZE = 128;
+    private static final long RULE_SIZE = 64;
+
+    private final long maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+
+    /**
+     * Creates a cache bounded by {@code xr.css.stylesheet-cache.size-kb}
+     */
+    public ConcurrentStylesheetCache() {
+        this(Configuration.valueAsInt("xr.css.stylesheet-cache.size-kb", 16384) * 1024L);
+    }
+
+    /**
+     * @param maxSize the maximum estimated memory of the cached stylesheets, in bytes
+     */
+    public ConcurrentStylesheetCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Nullable
+    @Override
+    public Stylesheet get(String uri, Function<String, @Nullable Stylesheet> loader) {
+        Entry entry = entries.get(uri);
+        if (entry != null) {
+            hits.increment();
+            entry.lastAccess = clock.incrementAndGet();
+            return entry.stylesheet;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        Stylesheet stylesheet = loader.apply(uri);
+        loadTime.add(System.nanoTime() - start);
+
+        Entry created = new Entry(stylesheet, clock.incrementAndGet());
+        Entry previous = entries.putIfAbsent(uri, created);
+        if (previous != null) {
+            return previous.stylesheet;
+        }
+        added(created);
+        return stylesheet;
+    }
+
+    @Override
+    public boolean contains(String uri) {
+        return entries.containsKey(uri);
+    }
+
+    @Override
+    public void put(String uri, @Nullable Stylesheet stylesheet) {
+        Entry created = new Entry(stylesheet, clock.incrementAndGet());
+        Entry previous = entries.put(uri, created);
+        if (previous != null) {
+            size.addAndGet(-previous.size);
+        }
+        added(created);
+    }
+
+    @Override
+    public void remove(String uri) {
+        Entry previous = entries.remove(uri);
+        if (previous != null) {
+            size.addAndGet(-previous.size);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (String uri : entries.keySet()) {
+            remove(uri);
+        }
+    }
+
+    @Override
+    public Statistics getStatistics() {
+        return new Statistics(hits.sum(), misses.sum(), evictions.sum(), loadTime.sum(), size.get());
+    }
+
+    private void added(Entry entry) {
+        if (size.addAndGet(entry.size) > maxSize) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        // access times keep changing while sorting, so sort a snapshot of them
+        List<Candidate> candidates = new ArrayList<>(entries.size());
+        entries.forEach((uri, entry) -> candidates.add(new Candidate(uri, entry, entry.lastAccess)));
+        candidates.sort(comparingLong(Candidate::lastAccess));
+        for (Candidate candidate : candidates) {
+            if (size.get() <= maxSize) {
+                break;
+            }
+            if (entries.remove(candidate.uri(), candidate.entry())) {
+                size.addAndGet(-candidate.entry().size);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * A rough estimate of the memory held by a parsed stylesheet, in bytes
+     */
+    static long estimateSize(@Nullable Stylesheet stylesheet) {
+        if (stylesheet == null) {
+            return RULE_SIZE;
+        }
+        long result = RULE_SIZE;
+        for (Object content : stylesheet.getContents()) {
+            if (content instanceof Ruleset ruleset) {
+                result += estimateSize(ruleset);
+            } else if (content instanceof MediaRule mediaRule) {
+                result += RULE_SIZE;
+                for (Ruleset ruleset : mediaRule.getContents()) {
+                    result += estimateSize(ruleset);
+                }
+            } else if (content instanceof PageRule pageRule) {
+                result += estimateSize(pageRule.getRuleset());
+                for (List<PropertyDeclaration> declarations : pageRule.getMarginBoxes().values()) {
+                    result += RULE_SIZE + declarations.size() * DECLARATION_SIZE;
+                }
+            }
+        }
+        return result + stylesheet.getFontFaceRules().size() * (RULE_SIZE + 4 * DECLARATION_SIZE);
+    }
+
+    private static long estimateSize(Ruleset ruleset) {
+        return RULE_SIZE + ruleset.getPropertyDeclarations().size() * DECLARATION_SIZE
+                + ruleset.getFSSelectors().size() * SELECTOR_SIZE;
+    }
+
+    private record Candidate(String uri, Entry entry, long lastAccess) {
+    }
+
+    private static final class Entry {
+        @Nullable
+        private final Stylesheet stylesheet;
+        private final long size;
+        private volatile long lastAccess;
+
+        private Entry(@Nullable Stylesheet stylesheet, long lastAccess) {
+            this.stylesheet = stylesheet;
+            this.size = estimateSize(stylesheet);
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.xhtmlrenderer.context;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of parsed CSS, shared by all threads. A cached value is handed
+ * out to everybody asking for the same key, so it must not be modified afterwards.
+ * <p>
+ * When the cache is full, a quarter of the entries is evicted in no
+ * particular order.
+ */
+class SharedCssCache<K, V> {
+    private final int capacity;
+    private final Map<K, V> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    SharedCssCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the cached value, or the value returned by the parser; nothing is cached
+     *         when the parser returns null
+     */
+    @Nullable
+    V get(K key, Supplier<@Nullable V> parser) {
+        if (capacity <= 0) {
+            misses.increment();
+            return parser.get();
+        }
+
+        V value = cache.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+
+        misses.increment();
+        value = parser.get();
+        if (value == null) {
+            return null;
+        }
+        if (cache.size() >= capacity) {
+            evict();
+        }
+        V previous = cache.putIfAbsent(key, value);
+        return previous == null ? value : previous;
+    }
+
+    private void evict() {
+        int target = capacity - capacity / 4;
+        for (Iterator<K> it = cache.keySet().iterator(); it.hasNext() && cache.size() > target; ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    void clear() {
+        cache.clear();
+    }
+}
@@ -27,8 +27,8 @@ import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.extend.UserInterface;
 
-import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -40,7 +40,7 @@ public class StandardAttributeResolver implements AttributeResolver {
     private final NamespaceHandler nsh;
     private final UserAgentCallback uac;
     private final UserInterface ui;
-    private final Map<Node, String> classAttributeCache = new IdentityHashMap<>();
+    private final Map<Node, String> classAttributeCache = new ConcurrentHashMap<>();
 
     public StandardAttributeResolver(NamespaceHandler nsh, UserAgentCallback uac, UserInterface ui) {
         this.nsh = nsh;
@@ -31,7 +31,10 @@ import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.lib.DOMTreeResolver;
 import org.xhtmlrenderer.css.newmatch.CascadedStyle;
 import org.xhtmlrenderer.css.newmatch.Matcher;
+import org.xhtmlrenderer.css.newmatch.MatcherStatistics;
+import org.xhtmlrenderer.css.newmatch.MatcherTemplate;
 import org.xhtmlrenderer.css.newmatch.PageInfo;
+import org.xhtmlrenderer.css.newmatch.SelectorProfiler;
 import org.xhtmlrenderer.css.sheet.FontFaceRule;
 import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
@@ -40,20 +43,40 @@ import org.xhtmlrenderer.extend.NamespaceHandler;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.extend.UserInterface;
 import org.xhtmlrenderer.layout.SharedContext;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.XRLog;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 
 /**
  * @author Torbjoern Gannholm
  */
 public class StyleReference {
+    /**
+     * Documents styled by the same stylesheets share one compiled template, also when
+     * they are rendered by different style references, each caching the stylesheets it
+     * loaded by URI. Stylesheets are therefore compared by URI, origin and the hash of
+     * their CSS, and only those parsed from no known CSS by identity.
+     */
+    private static final SharedCssCache<TemplateKey, MatcherTemplate> matcherTemplates =
+            new SharedCssCache<>(Configuration.valueAsInt("xr.css.matcher-template-cache.size", 32));
+
     @Nullable
     private NamespaceHandler _nsh;
     @Nullable
@@ -67,13 +90,33 @@ public class StyleReference {
     @Nullable
     private Matcher _matcher;
 
+    /**
+     * The tree resolver of the matcher, whose element positions live as long as the matcher
+     */
+    @Nullable
+    private DOMTreeResolver _treeResolver;
+
     private UserAgentCallback _uac;
 
+    @Nullable
+    private Executor _stylesheetLoadingExecutor;
+
+    @Nullable
+    private SelectorProfiler _selectorProfiler;
+
     public StyleReference(UserAgentCallback userAgent) {
         _uac = userAgent;
         _stylesheetFactory = new StylesheetFactoryImpl(userAgent);
     }
 
+    /**
+     * @param stylesheetCache caches the parsed stylesheets, can be shared by many style references
+     */
+    public StyleReference(UserAgentCallback userAgent, StylesheetCache stylesheetCache) {
+        _uac = userAgent;
+        _stylesheetFactory = new StylesheetFactoryImpl(userAgent, stylesheetCache);
+    }
+
     /**
      * Sets the documentContext attribute of the StyleReference object
      *
@@ -89,39 +132,157 @@ public class StyleReference {
 
         List<StylesheetInfo> infos = getStylesheets();
         XRLog.match("media = " + context.getMedia());
+        _treeResolver = new DOMTreeResolver();
         _matcher = new Matcher(
-                new DOMTreeResolver(),
+                _treeResolver,
                 attRes,
                 _stylesheetFactory,
-                readAndParseAll(infos, context.getMedia()),
-                context.getMedia());
+                getMatcherTemplate(readAndParseAll(infos, context.getMedia()), context.getMedia()));
+        if (_selectorProfiler != null) {
+            _matcher.setProfiler(_selectorProfiler);
+            _selectorProfiler.addDocument(String.valueOf(context.getBaseURL()), _matcher.getStatistics());
+        }
+    }
+
+    MatcherTemplate getMatcherTemplate(List<Stylesheet> stylesheets, String medium) {
+        List<Object> keys = new ArrayList<>(stylesheets.size());
+        for (Stylesheet sheet : stylesheets) {
+            String hash = sheet.getContentHash();
+            keys.add(hash == null ? sheet : new StylesheetKey(sheet.getURI(), sheet.getOrigin(), hash));
+        }
+        return matcherTemplates.get(new TemplateKey(keys, medium, _stylesheetFactory.isSupportCMYKColors()),
+                () -> new MatcherTemplate(stylesheets, medium));
     }
 
-    private List<Stylesheet> readAndParseAll(List<StylesheetInfo> infos, String medium) {
-        List<Stylesheet> result = new ArrayList<>(infos.size() + 15);
+    /**
+     * @return how many documents were matched with the template of an earlier document
+     */
+    public static long getMatcherTemplateCacheHits() {
+        return matcherTemplates.getHits();
+    }
+
+    /**
+     * @return how many matcher templates had to be compiled
+     */
+    public static long getMatcherTemplateCacheMisses() {
+        return matcherTemplates.getMisses();
+    }
+
+    /**
+     * @param stylesheets a {@link StylesheetKey} per stylesheet, or the stylesheet itself if its CSS is not known
+     */
+    private record TemplateKey(List<Object> stylesheets, String medium, boolean supportCMYKColors) {
+    }
+
+    private record StylesheetKey(String uri, StylesheetInfo.Origin origin, String contentHash) {
+    }
+
+    /**
+     * Loads the stylesheets that apply to the medium, and the stylesheets they import,
+     * in cascade order. Stylesheets that are not cached yet are loaded concurrently by
+     * the {@link #setStylesheetLoadingExecutor(Executor) stylesheet loading executor},
+     * if any, all others on the calling thread.
+     */
+    List<Stylesheet> readAndParseAll(List<StylesheetInfo> infos, String medium) {
+        try {
+            return loadAll(infos, medium, Set.of()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param importing the URIs of the stylesheets importing these, to stop on an import cycle
+     */
+    private CompletableFuture<List<Stylesheet>> loadAll(List<StylesheetInfo> infos, String medium, Set<String> importing) {
+        List<CompletableFuture<List<Stylesheet>>> loading = new ArrayList<>(infos.size());
         for (StylesheetInfo info : infos) {
             if (info.appliesToMedia(medium)) {
-                Stylesheet sheet = _stylesheetFactory.getStylesheet(info);
-
-                if (sheet != null) {
-                    if (!sheet.getImportRules().isEmpty()) {
-                        result.addAll(readAndParseAll(sheet.getImportRules(), medium));
-                    }
+                loading.add(load(info, medium, importing));
+            }
+        }
 
-                    result.add(sheet);
-                } else {
-                    XRLog.load(Level.WARNING, "Unable to load CSS from " + info.getUri());
-                }
+        return CompletableFuture.allOf(loading.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<Stylesheet> result = new ArrayList<>(loading.size() + 15);
+            for (CompletableFuture<List<Stylesheet>> sheets : loading) {
+                result.addAll(sheets.join());
             }
+            return result;
+        });
+    }
+
+    /**
+     * Loads a stylesheet, and then the stylesheets it imports, which come first in cascade order
+     */
+    private CompletableFuture<List<Stylesheet>> load(StylesheetInfo info, String medium, Set<String> importing) {
+        if (importing.contains(info.getUri())) {
+            XRLog.cssParse(Level.WARNING, "Ignoring cyclic @import of " + info.getUri());
+            return CompletableFuture.completedFuture(List.of());
         }
+        Executor executor = getStylesheetLoadingExecutor();
+        CompletableFuture<Stylesheet> loaded = executor != null && _stylesheetFactory.needsLoading(info, medium)
+                ? CompletableFuture.supplyAsync(() -> _stylesheetFactory.getStylesheet(info, medium), executor)
+                : CompletableFuture.completedFuture(_stylesheetFactory.getStylesheet(info, medium));
+        return loaded.thenCompose(sheet -> {
+            if (sheet == null) {
+                XRLog.load(Level.WARNING, "Unable to load CSS from " + info.getUri());
+                return CompletableFuture.completedFuture(List.of());
+            }
+            if (sheet.getImportRules().isEmpty()) {
+                return CompletableFuture.completedFuture(List.of(sheet));
+            }
+            Set<String> branch = new HashSet<>(importing);
+            branch.add(info.getUri());
+            return loadAll(sheet.getImportRules(), medium, branch).thenApply(imported -> {
+                List<Stylesheet> result = new ArrayList<>(imported);
+                result.add(sheet);
+                return result;
+            });
+        });
+    }
 
-        return result;
+    @Nullable
+    private Executor getStylesheetLoadingExecutor() {
+        return _stylesheetLoadingExecutor != null ? _stylesheetLoadingExecutor : DefaultExecutor.INSTANCE;
+    }
+
+    /**
+     * Sets the executor loading the stylesheets that are not cached yet concurrently,
+     * which must tolerate tasks blocking on I/O. The {@link UserAgentCallback} is then
+     * called from its threads, so it must not depend on thread locals or on the
+     * context class loader of the calling thread.
+     *
+     * @param executor the executor, or null for the default one: daemon threads shared by
+     *                 all style references if {@code xr.css.parallel-loading.threads} is
+     *                 at least 2, else the calling thread
+     */
+    public void setStylesheetLoadingExecutor(@Nullable Executor executor) {
+        _stylesheetLoadingExecutor = executor;
+    }
+
+    /**
+     * Measures the selectors matched against the documents set from now on.
+     *
+     * @param profiler the profiler, or null to stop measuring
+     */
+    public void setSelectorProfiler(@Nullable SelectorProfiler profiler) {
+        _selectorProfiler = profiler;
     }
 
     public boolean isHoverStyled(Element e) {
         return _matcher.isHoverStyled(e);
     }
 
+    /**
+     * @return counters of the selector matching done for the current document
+     */
+    public MatcherStatistics getMatcherStatistics() {
+        return _matcher.getStatistics();
+    }
+
     /**
      * Returns a Map keyed by CSS property names (e.g. 'border-width'), and the
      * assigned value as a SAC CSSValue instance. The properties should have
@@ -167,9 +328,23 @@ public class StyleReference {
      */
     public CascadedStyle getCascadedStyle(@Nullable Element e, boolean restyle) {
         if (e == null) return CascadedStyle.emptyCascadedStyle;
+        if (restyle && _treeResolver != null) {
+            // the children of a restyled element may have changed; they are restyled after it
+            _treeResolver.getPositionIndex().invalidate(e);
+        }
         return _matcher.getCascadedStyle(e, restyle);
     }
 
+    /**
+     * Lets an element reuse the style of its previous sibling element if
+     * matching would give them the same cascaded style.
+     *
+     * @return true if the element now shares the style of its sibling
+     */
+    public boolean shareStyle(Element e, Element sibling) {
+        return _matcher.shareStyle(e, sibling);
+    }
+
     @NonNull
     @CheckReturnValue
     public PageInfo getPageStyle(@Nullable String pageName, String pseudoPage) {
@@ -193,6 +368,10 @@ public class StyleReference {
         _stylesheetFactory.flushCachedStylesheets();
     }
 
+    public StylesheetCache getStylesheetCache() {
+        return _stylesheetFactory.getStylesheetCache();
+    }
+
     /**
      * Gets StylesheetInfos for all stylesheets and inline styles associated
      * with the current document. Default (user agent) stylesheet and the inline
@@ -233,5 +412,28 @@ public class StyleReference {
     public void setSupportCMYKColors(boolean b) {
         _stylesheetFactory.setSupportCMYKColors(b);
     }
-}
 
+    /**
+     * Daemon threads shared by all style references, or none, loading on the calling
+     * thread, unless {@code xr.css.parallel-loading.threads} is at least 2
+     */
+    private static final class DefaultExecutor {
+        @Nullable
+        private static final Executor INSTANCE = create(Configuration.valueAsInt("xr.css.parallel-loading.threads", 0));
+
+        @Nullable
+        private static Executor create(int threads) {
+            if (threads < 2) {
+                return null;
+            }
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, SECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "flying-saucer-css-loader-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
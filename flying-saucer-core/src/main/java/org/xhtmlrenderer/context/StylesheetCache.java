@@ -1,19 +1,56 @@
 package org.xhtmlrenderer.context;
 
+import org.jspecify.annotations.Nullable;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.extend.UserAgentCallback;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.function.Function;
 
-class StylesheetCache extends LinkedHashMap<String, Stylesheet> {
-    private static final int cacheCapacity = 16;
+/**
+ * Caches the stylesheets parsed by a {@link StylesheetFactoryImpl} by their URI.
+ * <p>
+ * Implementations must be safe to use from several threads, so that one cache
+ * can be shared by many renderers, see
+ * {@link StyleReference#StyleReference(UserAgentCallback, StylesheetCache)}.
+ * The default implementation is {@link ConcurrentStylesheetCache}.
+ */
+public interface StylesheetCache {
+    /**
+     * Returns the stylesheet cached for this URI, or loads and caches it.
+     * A failed load is cached too, as null, until the URI is removed.
+     *
+     * @param uri    the URI of the stylesheet
+     * @param loader loads the stylesheet on a cache miss, returns null if it could not be loaded
+     * @return the stylesheet, or null if it could not be loaded
+     */
+    @Nullable
+    Stylesheet get(String uri, Function<String, @Nullable Stylesheet> loader);
 
-    StylesheetCache() {
-        super(cacheCapacity,  0.75f, true);
-    }
+    /**
+     * @return true if a stylesheet, or a failed load, is cached for this URI
+     */
+    boolean contains(String uri);
+
+    /**
+     * Caches a stylesheet, replacing any stylesheet cached for the same URI
+     */
+    void put(String uri, @Nullable Stylesheet stylesheet);
+
+    void remove(String uri);
+
+    void clear();
+
+    Statistics getStatistics();
 
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<String, Stylesheet> eldest) {
-        return size() > cacheCapacity;
+    /**
+     * A snapshot of the counters of a cache
+     *
+     * @param hits          how many stylesheets were found in the cache
+     * @param misses        how many stylesheets had to be loaded
+     * @param evictions     how many stylesheets were dropped to stay within the size limit
+     * @param loadTimeNanos the time spent loading stylesheets on cache misses
+     * @param estimatedSize the estimated memory held by the cached stylesheets, in bytes
+     */
+    record Statistics(long hits, long misses, long evictions, long loadTimeNanos, long estimatedSize) {
     }
 }
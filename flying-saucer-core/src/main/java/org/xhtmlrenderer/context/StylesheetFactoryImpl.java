@@ -27,6 +27,7 @@ import org.xhtmlrenderer.css.sheet.Ruleset;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
+import org.xhtmlrenderer.css.sheet.StylesheetSnapshot;
 import org.xhtmlrenderer.extend.UserAgentCallback;
 import org.xhtmlrenderer.resource.CSSResource;
 import org.xhtmlrenderer.util.Configuration;
@@ -36,36 +37,77 @@ import org.xml.sax.InputSource;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.Map;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.Collections.synchronizedMap;
 
 /**
- * A Factory class for Cascading Style Sheets. Sheets are parsed using a single
- * parser instance for all sheets. Sheets are cached by URI using LRU test,
+ * A Factory class for Cascading Style Sheets. Each sheet is parsed with a parser of
+ * its own, since a parser keeps state while parsing and sheets may be loaded by several
+ * threads at once, see {@link StyleReference#setStylesheetLoadingExecutor}. Sheets are
+ * cached by URI, and by medium if they were parsed for one, in a {@link StylesheetCache},
  * but timestamp of file is not checked.
  *
  * @author Torbjoern Gannholm
  */
 public class StylesheetFactoryImpl implements StylesheetFactory {
+    private static final SharedCssCache<DeclarationKey, Ruleset> styleDeclarations =
+            new SharedCssCache<>(Configuration.valueAsInt("xr.css.style-declaration-cache.size", 4096));
+    private static final SharedCssCache<InlineKey, Stylesheet> inlineStylesheets =
+            new SharedCssCache<>(Configuration.valueAsInt("xr.css.inline-stylesheet-cache.size", 256));
+    private static final SharedCssCache<UserAgentKey, Stylesheet> userAgentStylesheets =
+            new SharedCssCache<>(Configuration.valueAsInt("xr.css.user-agent-stylesheet-cache.size", 8));
+    private static final boolean useSnapshots = Configuration.isTrue("xr.css.snapshots", true);
+    private static final boolean skipOtherMedia = Configuration.isTrue("xr.css.skip-other-media", true);
+    // style declarations are parsed by the threads styling elements, each with parsers of
+    // its own that are kept, so that the array they tokenize declarations in is reused
+    private static final ThreadLocal<CSSParser> declarationParser = ThreadLocal.withInitial(() -> createParser(false));
+    private static final ThreadLocal<CSSParser> cmykDeclarationParser = ThreadLocal.withInitial(() -> createParser(true));
+    // longer declarations are parsed by a new parser, so that no thread keeps a large array
+    private static final int MAX_REUSED_DECLARATION_LENGTH = 8192;
+
     /**
      * the UserAgentCallback to resolve uris
      */
     private UserAgentCallback _userAgentCallback;
 
-    /**
-     * an LRU cache
-     */
-    private final Map<String, Stylesheet> _cache = synchronizedMap(new StylesheetCache());
-    private final CSSParser _cssParser;
+    private final StylesheetCache _cache;
+    // the media stylesheets were parsed for, to find them in the cache by URI
+    private final Set<String> _media = ConcurrentHashMap.newKeySet();
+    private boolean _supportCMYKColors;
 
     public StylesheetFactoryImpl(UserAgentCallback userAgentCallback) {
+        this(userAgentCallback, new ConcurrentStylesheetCache());
+    }
+
+    /**
+     * @param cache caches the stylesheets loaded by URI, may be shared with other factories
+     */
+    public StylesheetFactoryImpl(UserAgentCallback userAgentCallback, StylesheetCache cache) {
         _userAgentCallback = userAgentCallback;
-        _cssParser = new CSSParser((uri, message) -> XRLog.cssParse(Level.WARNING, "(" + uri + ") " + message));
+        _cache = cache;
+    }
+
+    private CSSParser newParser(@Nullable String medium) {
+        CSSParser parser = newParser();
+        parser.setMedium(medium);
+        return parser;
+    }
+
+    private CSSParser newParser() {
+        return createParser(_supportCMYKColors);
+    }
+
+    private static CSSParser createParser(boolean supportCMYKColors) {
+        CSSParser parser = new CSSParser((uri, message) -> XRLog.cssParse(Level.WARNING, "(" + uri + ") " + message));
+        parser.setSupportCMYKColors(supportCMYKColors);
+        return parser;
     }
 
     @Override
@@ -73,10 +115,18 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         return parse(reader, info.getUri(), info.getOrigin());
     }
 
+    /**
+     * Parses a stylesheet with a parser of its own, because stylesheets may be
+     * loaded concurrently, see {@link StyleReference#setStylesheetLoadingExecutor}.
+     */
     @Override
     public Stylesheet parse(Reader reader, String uri, Origin origin) {
+        return parse(reader, uri, origin, null);
+    }
+
+    private Stylesheet parse(Reader reader, String uri, Origin origin, @Nullable String medium) {
         try {
-            return _cssParser.parseStylesheet(uri, origin, reader);
+            return newParser(medium).parseStylesheet(uri, origin, reader);
         } catch (IOException e) {
             XRLog.cssParse(Level.WARNING, "Couldn't parse stylesheet at URI " + uri + ": " + e.getMessage(), e);
             return new Stylesheet(uri, origin);
@@ -87,7 +137,7 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      * @return Returns null if uri could not be loaded
      */
     @Nullable
-    private Stylesheet parse(StylesheetInfo info) {
+    private Stylesheet parse(StylesheetInfo info, @Nullable String medium) {
         CSSResource cr = info.getContent()
                 .map(css -> new CSSResource(new ByteArrayInputStream(css.getBytes(UTF_8))))
                 .orElseGet(() -> _userAgentCallback.getCSSResource(info.getUri()));
@@ -99,15 +149,82 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         try (InputStream is = inputSource.getByteStream()) {
             if (is == null) return null;
             String charset = Configuration.valueFor("xr.stylesheets.charset-name", "UTF-8");
-            return parse(new InputStreamReader(is, charset), info);
+            String css = new String(is.readAllBytes(), Charset.forName(charset));
+            // identifies the stylesheet across factories, see StyleReference#getMatcherTemplate
+            String hash = StylesheetSnapshot.hash(css);
+            Stylesheet snapshot = useSnapshots ? readSnapshot(css, hash, info) : null;
+            Stylesheet sheet = snapshot != null ? snapshot : parse(new StringReader(css), info.getUri(), info.getOrigin(), medium);
+            sheet.setContentHash(hash);
+            return sheet;
         } catch (IOException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
+    /**
+     * @return the stylesheet precompiled from this CSS, or null if there is no usable snapshot of it
+     * @see StylesheetSnapshot
+     */
+    @Nullable
+    private Stylesheet readSnapshot(String css, String hash, StylesheetInfo info) {
+        URL snapshot = StylesheetFactoryImpl.class.getClassLoader()
+                .getResource(StylesheetSnapshot.RESOURCE_DIRECTORY + hash + StylesheetSnapshot.EXTENSION);
+        if (snapshot == null) {
+            return null;
+        }
+        try (InputStream in = snapshot.openStream()) {
+            return StylesheetSnapshot.read(in, hash, info.getUri(), info.getOrigin(), _supportCMYKColors);
+        } catch (IOException | RuntimeException e) {
+            XRLog.cssParse(Level.WARNING, "Ignoring snapshot " + snapshot + " of stylesheet " + info.getUri() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parses the declarations of a {@code style} attribute. Identical declarations are
+     * parsed only once per process, so the returned ruleset is frozen. Since elements may
+     * be styled concurrently, see {@link org.xhtmlrenderer.layout.SharedContext#setParallelCascadePool},
+     * each thread parses them with a parser of its own, which it reuses.
+     */
     @Override
     public Ruleset parseStyleDeclaration(Origin origin, String styleDeclaration) {
-        return _cssParser.parseDeclaration(origin, styleDeclaration);
+        return styleDeclarations.get(new DeclarationKey(origin, _supportCMYKColors, styleDeclaration),
+                () -> declarationParser(styleDeclaration).parseDeclaration(origin, styleDeclaration).freeze());
+    }
+
+    private CSSParser declarationParser(String styleDeclaration) {
+        if (styleDeclaration.length() > MAX_REUSED_DECLARATION_LENGTH) {
+            return newParser();
+        }
+        return (_supportCMYKColors ? cmykDeclarationParser : declarationParser).get();
+    }
+
+    /**
+     * @return how many style declarations were found in the process-wide cache
+     */
+    public static long getStyleDeclarationCacheHits() {
+        return styleDeclarations.getHits();
+    }
+
+    /**
+     * @return how many style declarations had to be parsed
+     */
+    public static long getStyleDeclarationCacheMisses() {
+        return styleDeclarations.getMisses();
+    }
+
+    /**
+     * @return how many embedded stylesheets were found in the process-wide cache
+     */
+    public static long getInlineStylesheetCacheHits() {
+        return inlineStylesheets.getHits();
+    }
+
+    /**
+     * @return how many embedded stylesheets had to be parsed
+     */
+    public static long getInlineStylesheetCacheMisses() {
+        return inlineStylesheets.getMisses();
     }
 
     /**
@@ -118,7 +235,8 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      *              factory.
      * @param sheet The sheet to cache.
      */
-    public void putStylesheet(String key, Stylesheet sheet) {
+    public void putStylesheet(String key, @Nullable Stylesheet sheet) {
+        removeParsedForMedia(key);
         _cache.put(key, sheet);
     }
 
@@ -128,7 +246,7 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      */
     //TODO: work out how to handle caching properly, with cache invalidation
     public boolean containsStylesheet(String key) {
-        return _cache.containsKey(key);
+        return _cache.contains(key) || _media.stream().anyMatch(medium -> _cache.contains(cacheKey(key, medium)));
     }
 
     /**
@@ -138,9 +256,16 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
      *            putStylesheet();
      */
     public void removeCachedStylesheet(String key) {
+        removeParsedForMedia(key);
         _cache.remove(key);
     }
 
+    private void removeParsedForMedia(String uri) {
+        for (String medium : _media) {
+            _cache.remove(cacheKey(uri, medium));
+        }
+    }
+
     void flushCachedStylesheets() {
         _cache.clear();
     }
@@ -157,14 +282,71 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
     @CheckReturnValue
     @Override
     public Stylesheet getStylesheet(StylesheetInfo info) {
+        return getStylesheet(info, null);
+    }
+
+    /**
+     * Like {@link #getStylesheet(StylesheetInfo)}, but when a medium is given, the
+     * {@code @media} rules for other media are skipped while parsing and left out of
+     * the stylesheet. Such stylesheets are cached per medium, unless a stylesheet
+     * for all media was already cached for the URI.
+     *
+     * @param medium the medium the stylesheet is used for, or null for all media
+     */
+    @Nullable
+    @CheckReturnValue
+    public Stylesheet getStylesheet(StylesheetInfo info, @Nullable String medium) {
         XRLog.load("Requesting stylesheet: " + info.getUri());
+        String parsedMedium = skipOtherMedia ? medium : null;
+
+        String content = info.getContent().orElse(null);
+        if (content != null) {
+            return inlineStylesheets.get(new InlineKey(info.getOrigin(), _supportCMYKColors, info.getUri(), content, parsedMedium),
+                    () -> parseShared(info, parsedMedium));
+        }
+        if (info.getOrigin() == Origin.USER_AGENT) {
+            // user agent stylesheets come with the renderer and never change
+            return userAgentStylesheets.get(new UserAgentKey(info.getUri(), _supportCMYKColors, parsedMedium),
+                    () -> parseShared(info, parsedMedium));
+        }
 
-        Stylesheet s = _cache.get(info.getUri());
-        if (s == null && !containsStylesheet(info.getUri())) {
-            s = parse(info);
-            putStylesheet(info.getUri(), s);
+        if (parsedMedium == null || _cache.contains(info.getUri())) {
+            return _cache.get(info.getUri(), uri -> parseShared(info, null));
         }
-        return s;
+        _media.add(parsedMedium);
+        return _cache.get(cacheKey(info.getUri(), parsedMedium), key -> parseShared(info, parsedMedium));
+    }
+
+    /**
+     * @return true if {@link #getStylesheet(StylesheetInfo, String)} has to load the
+     *         stylesheet from its URI, false if it is cached or embedded in the document
+     */
+    boolean needsLoading(StylesheetInfo info, @Nullable String medium) {
+        if (info.getContent().isPresent() || info.getOrigin() == Origin.USER_AGENT || _cache.contains(info.getUri())) {
+            return false;
+        }
+        String parsedMedium = skipOtherMedia ? medium : null;
+        return parsedMedium == null || !_cache.contains(cacheKey(info.getUri(), parsedMedium));
+    }
+
+    /**
+     * URIs cannot contain spaces, so this key is never the URI of another stylesheet
+     */
+    private static String cacheKey(String uri, String medium) {
+        return uri + " " + medium;
+    }
+
+    public StylesheetCache getStylesheetCache() {
+        return _cache;
+    }
+
+    /**
+     * Parses a stylesheet that may be shared by other documents and threads
+     */
+    @Nullable
+    private Stylesheet parseShared(StylesheetInfo info, @Nullable String medium) {
+        Stylesheet sheet = parse(info, medium);
+        return sheet == null ? null : sheet.freeze();
     }
 
     void setUserAgentCallback(UserAgentCallback userAgent) {
@@ -172,6 +354,20 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
     }
 
     void setSupportCMYKColors(boolean b) {
-        _cssParser.setSupportCMYKColors(b);
+        _supportCMYKColors = b;
+    }
+
+    boolean isSupportCMYKColors() {
+        return _supportCMYKColors;
+    }
+
+    private record DeclarationKey(Origin origin, boolean supportCMYKColors, String declaration) {
+    }
+
+    private record InlineKey(Origin origin, boolean supportCMYKColors, String uri, String content,
+                             @Nullable String medium) {
+    }
+
+    private record UserAgentKey(String uri, boolean supportCMYKColors, @Nullable String medium) {
     }
 }
@@ -20,7 +20,6 @@
 package org.xhtmlrenderer.css.extend.lib;
 
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xhtmlrenderer.css.extend.TreeResolver;
 
 import static java.util.Objects.requireNonNullElseGet;
@@ -30,6 +29,8 @@ import static java.util.Objects.requireNonNullElseGet;
  * @author scott
  */
 public class DOMTreeResolver implements TreeResolver {
+    private final ElementPositionIndex positions = new ElementPositionIndex();
+
     @Override
     public Node getParentElement(Node element) {
         Node parent = element.getParentNode();
@@ -94,23 +95,14 @@ public class DOMTreeResolver implements TreeResolver {
 
     @Override
     public int getPositionOfElement(Node element) {
-        Node parent = element.getParentNode();
-        NodeList nl = parent.getChildNodes();
-
-        int elt_count = 0;
-        int i = 0;
-        while (i < nl.getLength()) {
-            if (nl.item(i).getNodeType() == Node.ELEMENT_NODE) {
-                if(nl.item(i) == element) {
-                    return elt_count;
-                } else {
-                    elt_count++;
-                }
-            }
-            i++;
-        }
+        return positions.getPosition(element);
+    }
 
-        //should not happen
-        return -1;
+    /**
+     * The positions of elements, which must be {@link ElementPositionIndex#invalidate invalidated}
+     * after removing or reordering children of an element that is not restyled
+     */
+    public ElementPositionIndex getPositionIndex() {
+        return positions;
     }
 }
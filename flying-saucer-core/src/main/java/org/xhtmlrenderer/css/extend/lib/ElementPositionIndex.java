@@ -0,0 +1,69 @@
+package org.xhtmlrenderer.css.extend.lib;
+
+import org.w3c.dom.Node;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The positions of elements among their element siblings, for
+ * {@link org.xhtmlrenderer.css.extend.TreeResolver#getPositionOfElement(Node)}.
+ * <p>
+ * Finding the position of an element means walking its preceding siblings, so
+ * matching {@code :nth-child()}, {@code :even} or {@code :odd} against all children
+ * of a parent takes quadratic time. This index numbers the children of a parent
+ * once, when the position of one of them is first asked for.
+ * <p>
+ * The index belongs to the {@link DOMTreeResolver} of one matcher, so it lives no
+ * longer than the styles of that document. It does not listen to changes of the
+ * document: positions of a parent are indexed again when asked for an element it did
+ * not have, and {@link #invalidate(Node)} must be called after reordering or removing
+ * children of a parent, which {@link org.xhtmlrenderer.context.StyleReference} does
+ * for the children of every element that is restyled.
+ */
+public class ElementPositionIndex {
+    private final Map<Node, Map<Node, Integer>> positions = new ConcurrentHashMap<>();
+
+    /**
+     * @return the 0 based position of the element among the element children of
+     *         its parent, or -1 if it has no parent
+     */
+    public int getPosition(Node element) {
+        Node parent = element.getParentNode();
+        if (parent == null) {
+            return -1;
+        }
+        Map<Node, Integer> children = positions.get(parent);
+        Integer position = children == null ? null : children.get(element);
+        if (position == null) {
+            // not indexed yet, or inserted since
+            children = index(parent);
+            positions.put(parent, children);
+            position = children.get(element);
+        }
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Drops the positions of the children of this parent
+     */
+    public void invalidate(Node parent) {
+        positions.remove(parent);
+    }
+
+    public void clear() {
+        positions.clear();
+    }
+
+    private static Map<Node, Integer> index(Node parent) {
+        Map<Node, Integer> children = new IdentityHashMap<>();
+        int position = 0;
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                children.put(child, position++);
+            }
+        }
+        return children;
+    }
+}
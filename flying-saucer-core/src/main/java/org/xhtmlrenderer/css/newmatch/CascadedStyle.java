@@ -60,7 +60,7 @@ import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.USER;
 public class CascadedStyle {
     private final Map<CSSName, PropertyDeclaration> cascadedProperties;
 
-    private String fingerprint;
+    private StyleKey styleKey;
 
     /**
      * Creates a {@code CascadedStyle}, setting the display property
@@ -219,14 +219,61 @@ public class CascadedStyle {
 
     public int countAssigned() { return cascadedProperties.size(); }
 
-    public String getFingerprint() {
-        if (fingerprint == null) {
-            StringBuilder sb = new StringBuilder();
-            for (PropertyDeclaration propertyDeclaration : cascadedProperties.values()) {
-                sb.append(propertyDeclaration.getFingerprint());
+    /**
+     * Returns a key that is equal for cascaded styles that set the same
+     * properties to the same values. It is built once per style, so looking it
+     * up in a map allocates nothing.
+     */
+    public StyleKey getStyleKey() {
+        StyleKey key = styleKey;
+        if (key == null) {
+            key = new StyleKey(cascadedProperties.values().toArray(new PropertyDeclaration[0]));
+            styleKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * The cascaded declarations of a style, in property order, with a 64-bit hash
+     * over their names and values. Declarations are compared by identity first,
+     * and only by value when they are different instances with the same hash.
+     */
+    public static final class StyleKey {
+        private final PropertyDeclaration[] declarations;
+        private final long hash;
+
+        private StyleKey(PropertyDeclaration[] declarations) {
+            long hash = declarations.length;
+            for (PropertyDeclaration declaration : declarations) {
+                hash = hash * 0x9E3779B97F4A7C15L + declaration.getStructuralHash();
+            }
+            this.declarations = declarations;
+            this.hash = hash;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StyleKey other) || hash != other.hash || declarations.length != other.declarations.length) {
+                return false;
+            }
+            for (int i = 0; i < declarations.length; i++) {
+                if (!declarations[i].hasSameValue(other.declarations[i])) {
+                    return false;
+                }
             }
-            fingerprint = sb.toString();
+            return true;
         }
-        return fingerprint;
     }
 }
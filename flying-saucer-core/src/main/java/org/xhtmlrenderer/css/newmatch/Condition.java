@@ -23,7 +23,9 @@ import org.w3c.dom.Node;
 import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.TreeResolver;
 import org.xhtmlrenderer.css.parser.CSSParseException;
+import org.xhtmlrenderer.css.sheet.StylesheetSnapshot;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -38,9 +40,73 @@ import static java.util.Locale.ROOT;
  * @author tstgm
  */
 abstract class Condition {
+    private static final int UNSUPPORTED = 0;
+    private static final int LINK = 1;
+    private static final int FIRST_CHILD = 2;
+    private static final int LAST_CHILD = 3;
+    private static final int NTH_CHILD = 4;
+    private static final int EVEN_CHILD = 5;
+    private static final int ODD_CHILD = 6;
+    private static final int LANG = 7;
+    private static final int ID = 8;
+    private static final int CLASS = 9;
+    private static final int ATTRIBUTE_EXISTS = 10;
+    private static final int ATTRIBUTE_EQUALS = 11;
+    private static final int ATTRIBUTE_PREFIX = 12;
+    private static final int ATTRIBUTE_SUFFIX = 13;
+    private static final int ATTRIBUTE_SUBSTRING = 14;
+    private static final int ATTRIBUTE_MATCHES_LIST = 15;
+    private static final int ATTRIBUTE_MATCHES_FIRST_PART = 16;
 
     abstract boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes);
 
+    /**
+     * Writes this condition to a {@link StylesheetSnapshot}, to be read back by {@link #read}
+     */
+    abstract void write(StylesheetSnapshot.Writer out) throws IOException;
+
+    /**
+     * @return this condition in CSS syntax, for diagnostics
+     */
+    abstract String toCss();
+
+    static Condition read(StylesheetSnapshot.Reader in) throws IOException {
+        int type = in.readInt();
+        return switch (type) {
+            case UNSUPPORTED -> new UnsupportedCondition();
+            case LINK -> new LinkCondition();
+            case FIRST_CHILD -> new FirstChildCondition();
+            case LAST_CHILD -> new LastChildCondition();
+            case NTH_CHILD -> new NthChildCondition(in.readInt(), in.readInt());
+            case EVEN_CHILD -> new EvenChildCondition();
+            case ODD_CHILD -> new OddChildCondition();
+            case LANG -> new LangCondition(in.readRequiredString());
+            case ID -> new IDCondition(in.readRequiredString());
+            case CLASS -> new ClassCondition(in.readRequiredString());
+            case ATTRIBUTE_EXISTS -> {
+                String namespaceURI = in.readString();
+                String name = in.readString();
+                in.readString();
+                yield new AttributeExistsCondition(namespaceURI, name);
+            }
+            case ATTRIBUTE_EQUALS -> new AttributeEqualsCondition(in.readString(), in.readString(), in.readString());
+            case ATTRIBUTE_PREFIX -> new AttributePrefixCondition(in.readString(), in.readString(), in.readString());
+            case ATTRIBUTE_SUFFIX -> new AttributeSuffixCondition(in.readString(), in.readString(), in.readString());
+            case ATTRIBUTE_SUBSTRING -> new AttributeSubstringCondition(in.readString(), in.readString(), in.readString());
+            case ATTRIBUTE_MATCHES_LIST -> new AttributeMatchesListCondition(in.readString(), in.readString(), in.readString());
+            case ATTRIBUTE_MATCHES_FIRST_PART -> new AttributeMatchesFirstPartCondition(in.readString(), in.readString(), in.readString());
+            default -> throw new IOException("Unknown condition " + type + " in stylesheet snapshot");
+        };
+    }
+
+    /**
+     * @return true if this condition gives the same result for sibling elements
+     *         with equal name, classes and language and without an id
+     */
+    boolean isSharingSafe() {
+        return false;
+    }
+
     /**
      * the CSS condition [attribute]
      */
@@ -167,12 +233,36 @@ abstract class Condition {
 
         protected abstract boolean compare(String attrValue, String conditionValue);
 
+        protected abstract int type();
+
         AttributeCompareCondition(String namespaceURI, String name, String value) {
             _namespaceURI = namespaceURI;
             _name = name;
             _value = value;
         }
 
+        @Override
+        String toCss() {
+            String operator = switch (type()) {
+                case ATTRIBUTE_EQUALS -> "=";
+                case ATTRIBUTE_PREFIX -> "^=";
+                case ATTRIBUTE_SUFFIX -> "$=";
+                case ATTRIBUTE_SUBSTRING -> "*=";
+                case ATTRIBUTE_MATCHES_LIST -> "~=";
+                case ATTRIBUTE_MATCHES_FIRST_PART -> "|=";
+                default -> null;
+            };
+            return operator == null ? "[" + _name + "]" : "[" + _name + operator + '"' + _value + "\"]";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(type());
+            out.writeString(_namespaceURI);
+            out.writeString(_name);
+            out.writeString(_value);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
@@ -192,6 +282,11 @@ abstract class Condition {
             super(namespaceURI, name, null);
         }
 
+        @Override
+        protected int type() {
+            return ATTRIBUTE_EXISTS;
+        }
+
         @Override
         protected boolean compare(String attrValue, String conditionValue) {
             return !attrValue.isEmpty();
@@ -203,6 +298,11 @@ abstract class Condition {
             super(namespaceURI, name, value);
         }
 
+        @Override
+        protected int type() {
+            return ATTRIBUTE_EQUALS;
+        }
+
         @Override
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.equals(conditionValue);
@@ -214,6 +314,11 @@ abstract class Condition {
             super(namespaceURI, name, value);
         }
 
+        @Override
+        protected int type() {
+            return ATTRIBUTE_PREFIX;
+        }
+
         @Override
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.startsWith(conditionValue);
@@ -225,6 +330,11 @@ abstract class Condition {
             super(namespaceURI, name, value);
         }
 
+        @Override
+        protected int type() {
+            return ATTRIBUTE_SUFFIX;
+        }
+
         @Override
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.endsWith(conditionValue);
@@ -236,6 +346,11 @@ abstract class Condition {
             super(namespaceURI, name, value);
         }
 
+        @Override
+        protected int type() {
+            return ATTRIBUTE_SUBSTRING;
+        }
+
         @Override
         protected boolean compare(String attrValue, String conditionValue) {
             return attrValue.contains(conditionValue);
@@ -247,6 +362,11 @@ abstract class Condition {
             super(namespaceURI, name, value);
         }
 
+        @Override
+        protected int type() {
+            return ATTRIBUTE_MATCHES_LIST;
+        }
+
         @Override
         protected boolean compare(String attrValue, String conditionValue) {
             String[] ca = split(attrValue, ' ');
@@ -266,6 +386,11 @@ abstract class Condition {
             super(namespaceURI, name, value);
         }
 
+        @Override
+        protected int type() {
+            return ATTRIBUTE_MATCHES_FIRST_PART;
+        }
+
         @Override
         protected boolean compare(String attrValue, String conditionValue) {
             String[] ca = split(attrValue, '-');
@@ -282,6 +407,17 @@ abstract class Condition {
             this.classNameLength = className.length();
         }
 
+        @Override
+        String toCss() {
+            return "." + className;
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(CLASS);
+            out.writeString(className);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
@@ -291,6 +427,15 @@ abstract class Condition {
             return c != null && containsClassName(c);
         }
 
+        String getClassName() {
+            return className;
+        }
+
+        @Override
+        boolean isSharingSafe() {
+            return true;
+        }
+
         boolean containsClassName(String classAttribute) {
             return containsClassName(classAttribute, -1);
         }
@@ -312,13 +457,33 @@ abstract class Condition {
         }
     }
 
-    private static class IDCondition extends Condition {
+    static final class IDCondition extends Condition {
         private final String _id;
 
         private IDCondition(String id) {
             _id = id;
         }
 
+        String getId() {
+            return _id;
+        }
+
+        @Override
+        boolean isSharingSafe() {
+            return true;
+        }
+
+        @Override
+        String toCss() {
+            return "#" + _id;
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(ID);
+            out.writeString(_id);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
@@ -335,6 +500,22 @@ abstract class Condition {
             _lang = lang;
         }
 
+        @Override
+        boolean isSharingSafe() {
+            return true;
+        }
+
+        @Override
+        String toCss() {
+            return ":lang(" + _lang + ")";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(LANG);
+            out.writeString(_lang);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
@@ -355,6 +536,16 @@ abstract class Condition {
     }
 
     private static class FirstChildCondition extends Condition {
+        @Override
+        String toCss() {
+            return ":first-child";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(FIRST_CHILD);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             return treeRes.isFirstChildElement(e);
@@ -362,6 +553,16 @@ abstract class Condition {
     }
 
     private static class LastChildCondition extends Condition {
+        @Override
+        String toCss() {
+            return ":last-child";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(LAST_CHILD);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             return treeRes.isLastChildElement(e);
@@ -380,6 +581,18 @@ abstract class Condition {
             this.b = b;
         }
 
+        @Override
+        String toCss() {
+            return ":nth-child(" + a + "n" + (b < 0 ? "" : "+") + b + ")";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(NTH_CHILD);
+            out.writeInt(a);
+            out.writeInt(b);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             // getPositionOfElement() starts at 0, CSS spec starts at 1
@@ -465,6 +678,16 @@ abstract class Condition {
     }
 
     private static class EvenChildCondition extends Condition {
+        @Override
+        String toCss() {
+            return ":even";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(EVEN_CHILD);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             int position = treeRes.getPositionOfElement(e);
@@ -473,6 +696,16 @@ abstract class Condition {
     }
 
     private static class OddChildCondition extends Condition {
+        @Override
+        String toCss() {
+            return ":odd";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(ODD_CHILD);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             int position = treeRes.getPositionOfElement(e);
@@ -481,6 +714,16 @@ abstract class Condition {
     }
 
     private static class LinkCondition extends Condition {
+        @Override
+        String toCss() {
+            return ":link";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(LINK);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             return attRes.isLink(e);
@@ -492,11 +735,26 @@ abstract class Condition {
      * represents unsupported (or invalid) css, never matches
      */
     private static class UnsupportedCondition extends Condition {
+        @Override
+        String toCss() {
+            return ":unsupported";
+        }
+
+        @Override
+        void write(StylesheetSnapshot.Writer out) throws IOException {
+            out.writeInt(UNSUPPORTED);
+        }
+
         @Override
         boolean matches(Node e, AttributeResolver attRes, TreeResolver treeRes) {
             return false;
         }
 
+        @Override
+        boolean isSharingSafe() {
+            return true;
+        }
+
     }
 
     private static String[] split(String s, char ch) {
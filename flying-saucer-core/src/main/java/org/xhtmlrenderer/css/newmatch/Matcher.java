@@ -23,6 +23,7 @@ package org.xhtmlrenderer.css.newmatch;
 import com.google.errorprone.annotations.CheckReturnValue;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xhtmlrenderer.css.constants.MarginBoxName;
@@ -30,57 +31,74 @@ import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.StylesheetFactory;
 import org.xhtmlrenderer.css.extend.TreeResolver;
 import org.xhtmlrenderer.css.sheet.FontFaceRule;
-import org.xhtmlrenderer.css.sheet.MediaRule;
 import org.xhtmlrenderer.css.sheet.PageRule;
 import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
 import org.xhtmlrenderer.css.sheet.Ruleset;
 import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.dom.CompactDocument;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.Util;
-import org.xhtmlrenderer.util.XRLog;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static java.util.Collections.synchronizedMap;
-import static java.util.Collections.synchronizedSet;
-import static java.util.Comparator.comparingLong;
 import static org.xhtmlrenderer.css.newmatch.Selector.Axis.IMMEDIATE_SIBLING_AXIS;
 import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
 
 
 /**
+ * Matches the elements of a document against the selectors of a {@link MatcherTemplate}.
+ *
  * @author Torbjoern Gannholm
  */
 public class Matcher {
 
-    private final Mapper docMapper;
+    private final MatcherTemplate _template;
     private final AttributeResolver _attRes;
     private final TreeResolver _treeRes;
     private final StylesheetFactory _styleFactory;
 
-    private final Map<Node, Mapper> _map = synchronizedMap(new HashMap<>());
+    // elements may be matched by several threads at once, for a parallel cascade or
+    // when rendering the same document concurrently, so all mutable state is concurrent
+    private final Map<Node, Mapper> _map = new ConcurrentHashMap<>();
 
     //handle dynamic
-    private final Set<Node> _hoverElements = synchronizedSet(new HashSet<>());
-    private final Set<Node> _activeElements = synchronizedSet(new HashSet<>());
-    private final Set<Node> _focusElements = synchronizedSet(new HashSet<>());
-    private final Set<Node> _visitElements = synchronizedSet(new HashSet<>());
-    private final List<PageRule> _pageRules = new ArrayList<>();
-    private final List<FontFaceRule> _fontFaceRules = new ArrayList<>();
+    private final Set<Node> _hoverElements = ConcurrentHashMap.newKeySet();
+    private final Set<Node> _activeElements = ConcurrentHashMap.newKeySet();
+    private final Set<Node> _focusElements = ConcurrentHashMap.newKeySet();
+    private final Set<Node> _visitElements = ConcurrentHashMap.newKeySet();
+    private final Map<PageKey, PageInfo> _pageInfos = new ConcurrentHashMap<>();
+
+    private final boolean _useSelectorFilter = Configuration.isTrue("xr.css.selector-filter", true);
+    private final boolean _useStyleSharing = Configuration.isTrue("xr.css.style-sharing", true);
+    @Nullable
+    private volatile SelectorFilter _selectorFilter;
+    // set once an element of a document that may have changed is restyled
+    private volatile boolean _selectorFilterStale;
+    private final MatcherStatistics _statistics = new MatcherStatistics();
+    @Nullable
+    private volatile SelectorProfiler _profiler;
 
     public Matcher(TreeResolver tr, AttributeResolver ar,
                    StylesheetFactory factory, List<Stylesheet> stylesheets, String medium) {
+        this(tr, ar, factory, new MatcherTemplate(stylesheets, medium));
+    }
+
+    /**
+     * @param template the compiled stylesheets, which may be shared with other matchers
+     */
+    public Matcher(TreeResolver tr, AttributeResolver ar, StylesheetFactory factory, MatcherTemplate template) {
         _treeRes = tr;
         _attRes = ar;
         _styleFactory = factory;
-        docMapper = createDocumentMapper(stylesheets, medium);
+        _template = template;
     }
 
     public void removeStyle(Element e) {
@@ -88,10 +106,49 @@ public class Matcher {
     }
 
     public CascadedStyle getCascadedStyle(Element e, boolean restyle) {
-        synchronized (e) {
-            Mapper em = restyle ? matchElement(e) : getMapper(e);
-            return em.getCascadedStyle(e);
+        boolean profiling = _profiler != null;
+        long start = profiling ? System.nanoTime() : 0;
+        if (restyle && !_selectorFilterStale && !(e.getOwnerDocument() instanceof CompactDocument)) {
+            // the names, ids or classes of the document may have changed since the filter was built
+            _selectorFilterStale = true;
+            _selectorFilter = null;
+        }
+        Mapper em = restyle ? matchElement(e) : getMapper(e);
+        CascadedStyle result = em.getCascadedStyle(this, e);
+        if (profiling) {
+            _statistics.cascaded(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether an element can share the style of its previous sibling
+     * element, which must already have been matched. This is the case when both
+     * have the same name, classes, language and styling attributes, neither has an
+     * id, and no selector that may match them depends on anything else. If so, the
+     * element is linked to the sibling's Mapper without being matched itself.
+     *
+     * @return true if the element and its sibling share their style
+     */
+    public boolean shareStyle(Element e, Element sibling) {
+        if (!_useStyleSharing) {
+            return false;
+        }
+        Mapper siblingMapper = _map.get(sibling);
+        Node parent = _treeRes.getParentElement(e);
+        if (siblingMapper == null || parent == null || parent != _treeRes.getParentElement(sibling)) {
+            return false;
         }
+        boolean shared = isSimilar(e, sibling) && getMapper(parent).canShareStyle(this, e, sibling);
+        if (shared) {
+            link(e, siblingMapper);
+            if (_visitElements.contains(sibling)) _visitElements.add(e);
+            if (_activeElements.contains(sibling)) _activeElements.add(e);
+            if (_hoverElements.contains(sibling)) _hoverElements.add(e);
+            if (_focusElements.contains(sibling)) _focusElements.add(e);
+        }
+        _statistics.styleShared(shared);
+        return shared;
     }
 
     /**
@@ -100,19 +157,26 @@ public class Matcher {
      */
     @Nullable
     public CascadedStyle getPECascadedStyle(Element e, String pseudoElement) {
-        synchronized (e) {
-            Mapper em = getMapper(e);
-            return em.getPECascadedStyle(pseudoElement);
-        }
+        Mapper em = getMapper(e);
+        return em.getPECascadedStyle(pseudoElement);
     }
 
+    /**
+     * @return the style of pages with this name and pseudo-page, which is the same
+     *         instance for all such pages
+     */
     @NonNull
     @CheckReturnValue
     public PageInfo getPageCascadedStyle(@Nullable String pageName, String pseudoPage) {
+        return _pageInfos.computeIfAbsent(new PageKey(pageName, pseudoPage),
+                key -> createPageInfo(key.pageName(), key.pseudoPage()));
+    }
+
+    private PageInfo createPageInfo(@Nullable String pageName, String pseudoPage) {
         List<PropertyDeclaration> props = new ArrayList<>();
         Map<MarginBoxName, List<PropertyDeclaration>> marginBoxes = new HashMap<>();
 
-        for (PageRule pageRule : _pageRules) {
+        for (PageRule pageRule : _template.getPageRules()) {
             if (pageRule.applies(pageName, pseudoPage)) {
                 props.addAll(pageRule.getRuleset().getPropertyDeclarations());
                 marginBoxes.putAll(pageRule.getMarginBoxes());
@@ -124,7 +188,7 @@ public class Matcher {
     }
 
     public List<FontFaceRule> getFontFaceRules() {
-        return _fontFaceRules;
+        return _template.getFontFaceRules();
     }
 
     public boolean isVisitedStyled(Node e) {
@@ -143,56 +207,51 @@ public class Matcher {
         return _focusElements.contains(e);
     }
 
-    private Mapper matchElement(Node e) {
-        synchronized (e) {
-            Node parent = _treeRes.getParentElement(e);
-            Mapper child;
-            if (parent != null) {
-                Mapper m = getMapper(parent);
-                child = m.mapChild(e);
-            } else {//has to be document or fragment node
-                child = docMapper.mapChild(e);
-            }
-            return child;
-        }
+    public MatcherStatistics getStatistics() {
+        return _statistics;
     }
 
-    private Mapper createDocumentMapper(List<Stylesheet> stylesheets, String medium) {
-        Map<String, Selector> sorter = new TreeMap<>();
-        addAllStylesheets(stylesheets, sorter, medium);
-        XRLog.match("Matcher created with " + sorter.size() + " selectors");
-        return new Mapper(sorter.values());
+    /**
+     * @param profiler measures the selectors evaluated from now on, or null to stop measuring
+     */
+    public void setProfiler(@Nullable SelectorProfiler profiler) {
+        _profiler = profiler;
     }
 
-    private void addAllStylesheets(List<Stylesheet> stylesheets, Map<String, Selector> sorter, String medium) {
-        int count = 0;
-        int pCount = 0;
-        for (Stylesheet stylesheet : stylesheets) {
-            for (Object obj : stylesheet.getContents()) {
-                if (obj instanceof Ruleset ruleSet) {
-                    for (Selector selector : ruleSet.getFSSelectors()) {
-                        selector.setPos(++count);
-                        sorter.put(selector.getOrder(), selector);
-                    }
-                } else if (obj instanceof PageRule pageRule) {
-                    pageRule.setPos(++pCount);
-                    _pageRules.add(pageRule);
-                } else if (obj instanceof MediaRule mediaRule) {
-                    if (mediaRule.matches(medium)) {
-                        for (Ruleset ruleset : mediaRule.getContents()) {
-                            for (Selector selector : ruleset.getFSSelectors()) {
-                                selector.setPos(++count);
-                                sorter.put(selector.getOrder(), selector);
-                            }
-                        }
-                    }
-                }
-            }
+    private Mapper matchElement(Node e) {
+        Node parent = _treeRes.getParentElement(e);
+        Mapper child;
+        if (parent != null) {
+            Mapper m = getMapper(parent);
+            child = m.mapChild(this, e, getSelectorFilter(e));
+        } else {//has to be document or fragment node
+            child = _template.getDocMapper().mapChild(this, e, getSelectorFilter(e));
+        }
+        link(e, child);
+        return child;
+    }
 
-            _fontFaceRules.addAll(stylesheet.getFontFaceRules());
+    /**
+     * The filter is built for the document of the first element that is matched,
+     * elements of any other document are matched without one. Once an element is
+     * restyled, the document is no longer assumed to be unchanged and no filter is
+     * used, unless the document is a read-only {@link CompactDocument}.
+     */
+    @Nullable
+    private SelectorFilter getSelectorFilter(Node e) {
+        if (!_useSelectorFilter || _selectorFilterStale) {
+            return null;
+        }
+        Document doc = e.getOwnerDocument();
+        SelectorFilter filter = _selectorFilter;
+        if (filter == null && doc != null) {
+            filter = SelectorFilter.of(doc, _attRes, _treeRes);
+            _selectorFilter = filter;
         }
+        return filter != null && filter.isFor(doc) ? filter : null;
+    }
 
-        _pageRules.sort(comparingLong(PageRule::getOrder));
+    private record PageKey(@Nullable String pageName, String pseudoPage) {
     }
 
     private void link(Node e, Mapper m) {
@@ -208,45 +267,63 @@ public class Matcher {
         return m;
     }
 
-    private Ruleset getElementStyle(Node e) {
-        synchronized (e) {
-            if (_attRes == null || _styleFactory == null) {
-                return null;
-            }
+    private boolean isSimilar(Node e, Node sibling) {
+        if (!_treeRes.getElementName(e).equals(_treeRes.getElementName(sibling))
+                || !Objects.equals(e.getNamespaceURI(), sibling.getNamespaceURI())) {
+            return false;
+        }
+        if (_attRes == null) {
+            return true;
+        }
+        return _attRes.getID(e) == null && _attRes.getID(sibling) == null
+                && Objects.equals(_attRes.getClass(e), _attRes.getClass(sibling))
+                && Objects.equals(_attRes.getElementStyling(e), _attRes.getElementStyling(sibling))
+                && Objects.equals(_attRes.getNonCssStyling(e), _attRes.getNonCssStyling(sibling))
+                && Objects.equals(_attRes.getLang(e), _attRes.getLang(sibling));
+    }
 
-            String style = _attRes.getElementStyling(e);
-            if (Util.isNullOrEmpty(style)) {
-                return null;
-            }
+    private Ruleset getElementStyle(Node e) {
+        if (_attRes == null || _styleFactory == null) {
+            return null;
+        }
 
-            return _styleFactory.parseStyleDeclaration(AUTHOR, style);
+        String style = _attRes.getElementStyling(e);
+        if (Util.isNullOrEmpty(style)) {
+            return null;
         }
+
+        return _styleFactory.parseStyleDeclaration(AUTHOR, style);
     }
 
     private Ruleset getNonCssStyle(Node e) {
-        synchronized (e) {
-            if (_attRes == null || _styleFactory == null) {
-                return null;
-            }
-            String style = _attRes.getNonCssStyling(e);
-            if (Util.isNullOrEmpty(style)) {
-                return null;
-            }
-            return _styleFactory.parseStyleDeclaration(AUTHOR, style);
+        if (_attRes == null || _styleFactory == null) {
+            return null;
+        }
+        String style = _attRes.getNonCssStyling(e);
+        if (Util.isNullOrEmpty(style)) {
+            return null;
         }
+        return _styleFactory.parseStyleDeclaration(AUTHOR, style);
     }
 
     /**
      * Mapper represents a local CSS for a Node that is used to match the Node's
-     * children.
+     * children. Mappers only depend on the selectors, so they are shared by all
+     * matchers using the same {@link MatcherTemplate}.
      *
      * @author Torbjoern Gannholm
      */
-    private class Mapper {
+    static final class Mapper {
         private final List<Selector> axes;
         private final Map<String, List<Selector>> pseudoSelectors;
         private final List<Selector> mappedSelectors;
-        private Map<String, Mapper> children;
+        // elements may be matched concurrently, see SharedContext#setParallelCascadePool and MatcherTemplate
+        @Nullable
+        private volatile SelectorIndex index;
+        private final Map<String, Mapper> children = new ConcurrentHashMap<>();
+        // the style of the elements without style attribute or non-CSS styling, shared by all of them
+        @Nullable
+        private volatile CascadedStyle selectorStyle;
 
         Mapper(Collection<Selector> selectors) {
             this(new ArrayList<>(selectors), null, null);
@@ -261,24 +338,36 @@ public class Matcher {
         /**
          * Side effect: creates and stores a Mapper for the element
          *
+         * @param filter rejects selectors that cannot match in the element's document, may be null
          * @return The selectors that matched, sorted according to specificity
          *         (more correct: preserves the sort order from Matcher creation)
          */
-        Mapper mapChild(Node e) {
+        Mapper mapChild(Matcher matcher, Node e, @Nullable SelectorFilter filter) {
+            AttributeResolver attRes = matcher._attRes;
+            TreeResolver treeRes = matcher._treeRes;
             List<Selector> childAxes = new ArrayList<>(axes.size() + 10);
             Map<String, List<Selector>> pseudoSelectors = new HashMap<>();
             List<Selector> mappedSelectors = new ArrayList<>();
             StringBuilder key = new StringBuilder();
-            for (Selector axe : axes) {
-                switch (axe.getAxis()) {
-                    case DESCENDANT_AXIS -> childAxes.add(axe); // carry it forward to other descendants
-                    case IMMEDIATE_SIBLING_AXIS ->
-                            throw new RuntimeException("Selector axis: " + IMMEDIATE_SIBLING_AXIS);
-                    case CHILD_AXIS -> {
-                    }
+            SelectorProfiler profiler = matcher._profiler;
+            SelectorIndex index = getIndex();
+            int[] descendants = index.descendants();
+            int carried = 0;
+            int evaluated = 0;
+            int rejected = 0;
+            for (int candidate : index.candidates(e, attRes, treeRes)) {
+                // carry descendant selectors forward to other descendants, keeping them in sort order
+                while (carried < descendants.length && descendants[carried] <= candidate) {
+                    childAxes.add(axes.get(descendants[carried++]));
                 }
 
-                if (!axe.matches(e, _attRes, _treeRes)) {
+                Selector axe = axes.get(candidate);
+                if (filter != null && !filter.mightMatch(axe)) {
+                    rejected++;
+                    continue;
+                }
+                evaluated++;
+                if (!(profiler == null ? axe.matches(e, attRes, treeRes) : profiler.matches(axe, e, attRes, treeRes))) {
                     continue;
                 }
                 //Assumption: if it is a pseudo-element, it does not also have dynamic pseudo-class
@@ -290,18 +379,19 @@ public class Matcher {
                     continue;
                 }
                 if (axe.isPseudoClass(Selector.VISITED_PSEUDOCLASS)) {
-                    _visitElements.add(e);
+                    matcher._visitElements.add(e);
                 }
                 if (axe.isPseudoClass(Selector.ACTIVE_PSEUDOCLASS)) {
-                    _activeElements.add(e);
+                    matcher._activeElements.add(e);
                 }
                 if (axe.isPseudoClass(Selector.HOVER_PSEUDOCLASS)) {
-                    _hoverElements.add(e);
+                    matcher._hoverElements.add(e);
                 }
                 if (axe.isPseudoClass(Selector.FOCUS_PSEUDOCLASS)) {
-                    _focusElements.add(e);
+                    matcher._focusElements.add(e);
                 }
-                if (!axe.matchesDynamic(e, _attRes, _treeRes)) {
+                if (!(profiler == null ? axe.matchesDynamic(e, attRes, treeRes)
+                        : profiler.matchesDynamic(axe, e, attRes, treeRes))) {
                     continue;
                 }
                 key.append(axe.getSelectorID()).append(":");
@@ -317,32 +407,75 @@ public class Matcher {
                     }
                 }
             }
-            if (children == null) children = new HashMap<>();
-            Mapper childMapper = children.computeIfAbsent(key.toString(), k ->
+            while (carried < descendants.length) {
+                childAxes.add(axes.get(descendants[carried++]));
+            }
+            matcher._statistics.selectorsTested(evaluated, rejected);
+            String childKey = key.toString();
+            Mapper child = children.get(childKey);
+            matcher._statistics.elementMatched(child != null);
+            if (child != null) {
+                return child;
+            }
+            return children.computeIfAbsent(childKey, k ->
                     new Mapper(childAxes, pseudoSelectors, mappedSelectors));
-            link(e, childMapper);
-            return childMapper;
         }
 
-        CascadedStyle getCascadedStyle(Node e) {
-            synchronized (e) {
-                Ruleset elementStyling = getElementStyle(e);
-                Ruleset nonCssStyling = getNonCssStyle(e);
-                List<PropertyDeclaration> propList = new ArrayList<>();
-                //specificity 0,0,0,0
-                if (nonCssStyling != null) {
-                    propList.addAll(nonCssStyling.getPropertyDeclarations());
-                }
-                //these should have been returned in order of specificity
-                for (Selector selector : mappedSelectors) {
-                    propList.addAll(selector.getRuleset().getPropertyDeclarations());
+        private SelectorIndex getIndex() {
+            SelectorIndex result = index;
+            if (result == null) {
+                result = new SelectorIndex(axes);
+                index = result;
+            }
+            return result;
+        }
+
+        /**
+         * @return true if every selector that may match the element gives the same
+         *         result for its similar sibling
+         */
+        boolean canShareStyle(Matcher matcher, Node e, Node sibling) {
+            AttributeResolver attRes = matcher._attRes;
+            TreeResolver treeRes = matcher._treeRes;
+            for (int candidate : getIndex().candidates(e, attRes, treeRes)) {
+                Selector axe = axes.get(candidate);
+                if (!axe.isSharingSafe()
+                        || axe.matchesDynamic(e, attRes, treeRes) != axe.matchesDynamic(sibling, attRes, treeRes)) {
+                    return false;
                 }
-                //specificity 1,0,0,0
-                if (elementStyling != null) {
-                    propList.addAll(elementStyling.getPropertyDeclarations());
+            }
+            return true;
+        }
+
+        CascadedStyle getCascadedStyle(Matcher matcher, Node e) {
+            Ruleset elementStyling = matcher.getElementStyle(e);
+            Ruleset nonCssStyling = matcher.getNonCssStyle(e);
+            if (elementStyling == null && nonCssStyling == null) {
+                CascadedStyle result = selectorStyle;
+                if (result == null) {
+                    result = createCascadedStyle(null, null);
+                    selectorStyle = result;
                 }
-                return propList.isEmpty() ? CascadedStyle.emptyCascadedStyle : new CascadedStyle(propList);
+                return result;
+            }
+            return createCascadedStyle(elementStyling, nonCssStyling);
+        }
+
+        private CascadedStyle createCascadedStyle(@Nullable Ruleset elementStyling, @Nullable Ruleset nonCssStyling) {
+            List<PropertyDeclaration> propList = new ArrayList<>();
+            //specificity 0,0,0,0
+            if (nonCssStyling != null) {
+                propList.addAll(nonCssStyling.getPropertyDeclarations());
+            }
+            //these should have been returned in order of specificity
+            for (Selector selector : mappedSelectors) {
+                propList.addAll(selector.getRuleset().getPropertyDeclarations());
+            }
+            //specificity 1,0,0,0
+            if (elementStyling != null) {
+                propList.addAll(elementStyling.getPropertyDeclarations());
             }
+            return propList.isEmpty() ? CascadedStyle.emptyCascadedStyle : new CascadedStyle(propList);
         }
 
         /**
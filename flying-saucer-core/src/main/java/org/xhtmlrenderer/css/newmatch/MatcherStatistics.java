@@ -0,0 +1,107 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the work done by a {@link Matcher} while matching the elements
+ * of its document.
+ */
+public class MatcherStatistics {
+    private final LongAdder evaluatedSelectors = new LongAdder();
+    private final LongAdder rejectedSelectors = new LongAdder();
+    private final LongAdder sharedStyles = new LongAdder();
+    private final LongAdder unsharedStyles = new LongAdder();
+    private final LongAdder matchedElements = new LongAdder();
+    private final LongAdder mapperHits = new LongAdder();
+    private final LongAdder mapperMisses = new LongAdder();
+    private final LongAdder cascadeNanos = new LongAdder();
+
+    void selectorsTested(int evaluated, int rejected) {
+        evaluatedSelectors.add(evaluated);
+        rejectedSelectors.add(rejected);
+    }
+
+    void styleShared(boolean shared) {
+        (shared ? sharedStyles : unsharedStyles).increment();
+    }
+
+    void elementMatched(boolean mapperFound) {
+        matchedElements.increment();
+        (mapperFound ? mapperHits : mapperMisses).increment();
+    }
+
+    void cascaded(long nanos) {
+        cascadeNanos.add(nanos);
+    }
+
+    /**
+     * @return how many times a selector was evaluated against an element
+     */
+    public long getEvaluatedSelectors() {
+        return evaluatedSelectors.sum();
+    }
+
+    /**
+     * @return how many times a selector was rejected by the {@link SelectorFilter}
+     *         without being evaluated
+     */
+    public long getRejectedSelectors() {
+        return rejectedSelectors.sum();
+    }
+
+    /**
+     * @return how many elements reused the style of their previous sibling
+     */
+    public long getSharedStyles() {
+        return sharedStyles.sum();
+    }
+
+    /**
+     * @return how many elements had a styled previous sibling, but could not share its style
+     */
+    public long getUnsharedStyles() {
+        return unsharedStyles.sum();
+    }
+
+    /**
+     * @return the fraction of elements with a styled previous sibling that shared its style
+     */
+    public double getStyleSharingHitRate() {
+        long shared = getSharedStyles();
+        long total = shared + getUnsharedStyles();
+        return total == 0 ? 0 : (double) shared / total;
+    }
+
+    /**
+     * @return how many elements were matched against the selectors, not counting
+     *         those that shared the style of their sibling
+     */
+    public long getMatchedElements() {
+        return matchedElements.sum();
+    }
+
+    /**
+     * @return the fraction of matched elements whose combination of matching selectors
+     *         had been seen before, so that the existing Mapper for it was reused
+     */
+    public double getMapperHitRate() {
+        long hits = mapperHits.sum();
+        long total = hits + mapperMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the time spent computing the cascaded styles of elements, including
+     *         matching them; only measured while a {@link SelectorProfiler} is set
+     */
+    public long getCascadeNanos() {
+        return cascadeNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "%s{evaluated=%d, rejected=%d, shared=%d, unshared=%d, matched=%d}".formatted(getClass().getSimpleName(),
+                getEvaluatedSelectors(), getRejectedSelectors(), getSharedStyles(), getUnsharedStyles(),
+                getMatchedElements());
+    }
+}
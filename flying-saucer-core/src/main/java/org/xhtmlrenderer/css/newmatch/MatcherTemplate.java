@@ -0,0 +1,91 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import org.xhtmlrenderer.css.sheet.FontFaceRule;
+import org.xhtmlrenderer.css.sheet.MediaRule;
+import org.xhtmlrenderer.css.sheet.PageRule;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.util.XRLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Comparator.comparingLong;
+
+/**
+ * The part of a {@link Matcher} that only depends on its stylesheets and medium:
+ * the selectors in cascade order, the page and font-face rules, and the tree of
+ * Mappers that is built up as elements are matched. A template can be used by
+ * any number of matchers at once, for any number of documents, which then only
+ * keep the state of their own document.
+ * <p>
+ * The tree of Mappers grows with the combinations of selectors that matched
+ * some element, which is bounded by the stylesheets rather than by the documents.
+ */
+public final class MatcherTemplate {
+    private final Matcher.Mapper docMapper;
+    private final List<PageRule> pageRules;
+    private final List<FontFaceRule> fontFaceRules;
+    private final int selectorCount;
+
+    /**
+     * @param stylesheets the stylesheets in cascade order; they must not be changed
+     *                    as long as the template is used
+     */
+    public MatcherTemplate(List<Stylesheet> stylesheets, String medium) {
+        Map<String, Selector> sorter = new TreeMap<>();
+        List<PageRule> pages = new ArrayList<>();
+        List<FontFaceRule> fontFaces = new ArrayList<>();
+        int count = 0;
+        for (Stylesheet stylesheet : stylesheets) {
+            for (Object obj : stylesheet.getContents()) {
+                if (obj instanceof Ruleset ruleSet) {
+                    for (Selector selector : ruleSet.getFSSelectors()) {
+                        sorter.put(selector.getOrder(++count), selector);
+                    }
+                } else if (obj instanceof PageRule pageRule) {
+                    pages.add(pageRule);
+                } else if (obj instanceof MediaRule mediaRule) {
+                    if (mediaRule.matches(medium)) {
+                        for (Ruleset ruleset : mediaRule.getContents()) {
+                            for (Selector selector : ruleset.getFSSelectors()) {
+                                sorter.put(selector.getOrder(++count), selector);
+                            }
+                        }
+                    }
+                }
+            }
+
+            fontFaces.addAll(stylesheet.getFontFaceRules());
+        }
+
+        // stylesheets may be shared by other documents, so page rules are not numbered:
+        // the sort is stable and keeps rules of equal specificity in specification order
+        pages.sort(comparingLong(PageRule::getOrder));
+
+        XRLog.match("Matcher created with " + sorter.size() + " selectors");
+        docMapper = new Matcher.Mapper(sorter.values());
+        pageRules = unmodifiableList(pages);
+        fontFaceRules = unmodifiableList(fontFaces);
+        selectorCount = sorter.size();
+    }
+
+    Matcher.Mapper getDocMapper() {
+        return docMapper;
+    }
+
+    List<PageRule> getPageRules() {
+        return pageRules;
+    }
+
+    List<FontFaceRule> getFontFaceRules() {
+        return fontFaceRules;
+    }
+
+    public int getSelectorCount() {
+        return selectorCount;
+    }
+}
@@ -26,11 +26,21 @@ import org.xhtmlrenderer.css.constants.MarginBoxName;
 import org.xhtmlrenderer.css.parser.PropertyValue;
 import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.EmptyStyle;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * The style of a page and its margin boxes. The {@link Matcher} hands out the same
+ * instance for all pages with the same name and pseudo-page, so it is immutable.
+ */
 public class PageInfo {
     private final List<PropertyDeclaration> _properties;
     private final CascadedStyle _pageStyle;
@@ -39,11 +49,18 @@ public class PageInfo {
     @Nullable
     private final List<PropertyDeclaration> _xmpPropertyList;
 
+    @Nullable
+    private volatile CalculatedStyle _calculatedPageStyle;
+
     public PageInfo(List<PropertyDeclaration> properties, CascadedStyle pageStyle, Map<MarginBoxName, List<PropertyDeclaration>> marginBoxes) {
-        _properties = properties;
+        Map<MarginBoxName, List<PropertyDeclaration>> boxes = new HashMap<>(marginBoxes);
+        List<PropertyDeclaration> xmpPropertyList = boxes.remove(MarginBoxName.FS_PDF_XMP_METADATA);
+        boxes.replaceAll((name, declarations) -> unmodifiableList(declarations));
+
+        _properties = unmodifiableList(properties);
         _pageStyle = pageStyle;
-        _marginBoxes = marginBoxes;
-        _xmpPropertyList = marginBoxes.remove(MarginBoxName.FS_PDF_XMP_METADATA);
+        _marginBoxes = unmodifiableMap(boxes);
+        _xmpPropertyList = xmpPropertyList == null ? null : unmodifiableList(xmpPropertyList);
     }
 
     public Map<MarginBoxName, List<PropertyDeclaration>> getMarginBoxes() {
@@ -54,6 +71,19 @@ public class PageInfo {
         return _pageStyle;
     }
 
+    /**
+     * @return the page style derived from the initial values, computed once for
+     *         all pages of this kind
+     */
+    public CalculatedStyle getCalculatedPageStyle() {
+        CalculatedStyle style = _calculatedPageStyle;
+        if (style == null) {
+            style = new EmptyStyle().deriveStyle(_pageStyle);
+            _calculatedPageStyle = style;
+        }
+        return style;
+    }
+
     public List<PropertyDeclaration> getProperties() {
         return _properties;
     }
@@ -25,12 +25,16 @@ import org.w3c.dom.Node;
 import org.xhtmlrenderer.css.extend.AttributeResolver;
 import org.xhtmlrenderer.css.extend.TreeResolver;
 import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.StylesheetSnapshot;
 import org.xhtmlrenderer.util.XRLog;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
+import static org.xhtmlrenderer.css.newmatch.Selector.Axis.CHILD_AXIS;
 import static org.xhtmlrenderer.css.newmatch.Selector.Axis.DESCENDANT_AXIS;
 
 
@@ -59,6 +63,14 @@ public class Selector {
 
     private List<Condition> conditions;
 
+    // computed by the first of the threads matching a shared stylesheet, volatile
+    // so that the others see the whole array
+    @Nullable
+    private volatile int[] requiredKeyHashes;
+
+    @Nullable
+    private String specificityOrder;
+
     public enum Axis {DESCENDANT_AXIS, CHILD_AXIS, IMMEDIATE_SIBLING_AXIS}
 
     public static final int VISITED_PSEUDOCLASS = 2;
@@ -70,10 +82,10 @@ public class Selector {
      * Give each a unique ID to be able to create a key to internalize Matcher.Mappers
      */
     private final int selectorID;
-    private static int selectorCount;
+    private static final AtomicInteger selectorCount = new AtomicInteger();
 
     public Selector() {
-        selectorID = selectorCount++;
+        selectorID = selectorCount.getAndIncrement();
     }
 
     /**
@@ -384,17 +396,33 @@ public class Selector {
      * returns "a number in a large base" with specificity and specification
      * order of selector
      *
+     * @param pos the specification order of this selector among the selectors
+     *            of the matcher, which may differ from {@link #setPos(int)} when
+     *            the stylesheet is shared by several documents
      * @return The order value
      */
-    String getOrder() {
+    String getOrder(int pos) {
         if (chainedSelector != null) {
-            return chainedSelector.getOrder();
+            return chainedSelector.getOrder(pos);
         }//only "deepest" value is correct
-        String b = "000" + getSpecificityB();
-        String c = "000" + getSpecificityC();
-        String d = "000" + getSpecificityD();
-        String p = "00000" + _pos;
-        return "0" + b.substring(b.length() - 3) + c.substring(c.length() - 3) + d.substring(d.length() - 3) + p.substring(p.length() - 5);
+        String p = "00000" + pos;
+        return getSpecificityOrder() + p.substring(p.length() - 5);
+    }
+
+    /**
+     * The specificity part of {@link #getOrder(int)}, computed once because
+     * shared stylesheets are ordered again by every matcher using them
+     */
+    private String getSpecificityOrder() {
+        String order = specificityOrder;
+        if (order == null) {
+            String b = "000" + getSpecificityB();
+            String c = "000" + getSpecificityC();
+            String d = "000" + getSpecificityD();
+            order = "0" + b.substring(b.length() - 3) + c.substring(c.length() - 3) + d.substring(d.length() - 3);
+            specificityOrder = order;
+        }
+        return order;
     }
 
     /**
@@ -434,6 +462,99 @@ public class Selector {
         return selectorID;
     }
 
+    /**
+     * The element name this selector requires, or null if it matches any element
+     */
+    @Nullable
+    String getName() {
+        return _name;
+    }
+
+    /**
+     * The id this selector requires the element to have, or null if none
+     */
+    @Nullable
+    String getRequiredID() {
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                if (condition instanceof Condition.IDCondition idCondition) {
+                    return idCondition.getId();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One of the classes this selector requires the element to have, or null if none
+     */
+    @Nullable
+    String getRequiredClass() {
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                if (condition instanceof Condition.ClassCondition classCondition) {
+                    return classCondition.getClassName();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if, apart from dynamic pseudo-classes, this selector gives the
+     *         same result for sibling elements with equal name, classes and
+     *         language and without an id, so they can share their style
+     */
+    boolean isSharingSafe() {
+        if (siblingSelector != null) {
+            return false;
+        }
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                if (!condition.isSharingSafe()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes of the element names, ids and classes that this selector and the
+     * selectors chained to it require, as used by {@link SelectorFilter}
+     */
+    int[] getRequiredKeyHashes() {
+        int[] result = requiredKeyHashes;
+        if (result == null) {
+            List<Integer> hashes = new ArrayList<>();
+            collectRequiredKeyHashes(hashes);
+            result = hashes.stream().distinct().mapToInt(Integer::intValue).toArray();
+            requiredKeyHashes = result;
+        }
+        return result;
+    }
+
+    private void collectRequiredKeyHashes(List<Integer> hashes) {
+        if (_name != null) {
+            hashes.add(SelectorFilter.nameHash(_name));
+        }
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                if (condition instanceof Condition.IDCondition idCondition) {
+                    hashes.add(SelectorFilter.idHash(idCondition.getId()));
+                } else if (condition instanceof Condition.ClassCondition classCondition) {
+                    hashes.add(SelectorFilter.classHash(classCondition.getClassName()));
+                }
+            }
+        }
+        if (siblingSelector != null) {
+            siblingSelector.collectRequiredKeyHashes(hashes);
+        }
+        if (chainedSelector != null) {
+            chainedSelector.collectRequiredKeyHashes(hashes);
+        }
+    }
+
     public void setName(String name) {
         _name = name;
         _specificityD++;
@@ -481,6 +602,106 @@ public class Selector {
         _namespaceURI = namespaceURI;
     }
 
+    /**
+     * Writes this selector and the selectors chained to it to a {@link StylesheetSnapshot}
+     */
+    public void writeSnapshot(StylesheetSnapshot.Writer out) throws IOException {
+        out.writeString(_axis.name());
+        out.writeString(_name);
+        out.writeString(_namespaceURI);
+        out.writeInt(_pc);
+        out.writeString(_pe);
+        out.writeInt(_specificityB);
+        out.writeInt(_specificityC);
+        out.writeInt(_specificityD);
+        out.writeInt(_pos);
+        out.writeInt(conditions == null ? -1 : conditions.size());
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                condition.write(out);
+            }
+        }
+        writeSnapshot(out, chainedSelector);
+        writeSnapshot(out, siblingSelector);
+    }
+
+    private static void writeSnapshot(StylesheetSnapshot.Writer out, @Nullable Selector selector) throws IOException {
+        out.writeBoolean(selector != null);
+        if (selector != null) {
+            selector.writeSnapshot(out);
+        }
+    }
+
+    /**
+     * Reads a selector written by {@link #writeSnapshot}
+     */
+    public static Selector readSnapshot(StylesheetSnapshot.Reader in, Ruleset parent) throws IOException {
+        Selector selector = new Selector();
+        selector._parent = parent;
+        selector._axis = Axis.valueOf(in.readRequiredString());
+        selector._name = in.readString();
+        selector._namespaceURI = in.readString();
+        selector._pc = in.readInt();
+        selector._pe = in.readString();
+        selector._specificityB = in.readInt();
+        selector._specificityC = in.readInt();
+        selector._specificityD = in.readInt();
+        selector._pos = in.readInt();
+        int conditionCount = in.readInt();
+        if (conditionCount >= 0) {
+            selector.conditions = new ArrayList<>(conditionCount);
+            for (int i = 0; i < conditionCount; i++) {
+                selector.conditions.add(Condition.read(in));
+            }
+        }
+        if (in.readBoolean()) {
+            selector.chainedSelector = readSnapshot(in, parent);
+        }
+        if (in.readBoolean()) {
+            selector.siblingSelector = readSnapshot(in, parent);
+        }
+        return selector;
+    }
+
+    /**
+     * @return this selector and the selectors chained to it in CSS syntax, for
+     *         diagnostics. A selector that is only the end of a longer selector,
+     *         matched after the elements its start matched, begins with an ellipsis.
+     */
+    public String toCss() {
+        StringBuilder result = new StringBuilder();
+        if (_parent != null && !_parent.getFSSelectors().contains(this)) {
+            result.append(_axis == CHILD_AXIS ? "... > " : "... ");
+        }
+        appendCss(result);
+        return result.toString();
+    }
+
+    private void appendCss(StringBuilder out) {
+        if (siblingSelector != null) {
+            siblingSelector.appendCss(out);
+            out.append(" + ");
+        }
+        int length = out.length();
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                out.append(condition.toCss());
+            }
+        }
+        if (isPseudoClass(VISITED_PSEUDOCLASS)) out.append(":visited");
+        if (isPseudoClass(HOVER_PSEUDOCLASS)) out.append(":hover");
+        if (isPseudoClass(ACTIVE_PSEUDOCLASS)) out.append(":active");
+        if (isPseudoClass(FOCUS_PSEUDOCLASS)) out.append(":focus");
+        if (_pe != null) out.append("::").append(_pe);
+        if (_name != null || out.length() == length) {
+            out.insert(length, _name == null ? "*" : _name);
+        }
+        if (chainedSelector != null) {
+            out.append(chainedSelector._axis == CHILD_AXIS ? " > " : " ");
+            chainedSelector.appendCss(out);
+        }
+    }
+
     @Override
     public String toString() {
         return "%s{%s}".formatted(getClass().getSimpleName(), _name);
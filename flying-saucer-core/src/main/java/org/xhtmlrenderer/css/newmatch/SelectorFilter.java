@@ -0,0 +1,194 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.css.extend.AttributeResolver;
+import org.xhtmlrenderer.css.extend.TreeResolver;
+
+/**
+ * A Bloom filter of the element names, ids and classes used in a document.
+ * <p>
+ * The Matcher works top-down: the part of a selector chain left of a combinator
+ * is matched against an ancestor before the rest of the chain is carried
+ * forward to its descendants. A chain that needs a name, id or class which
+ * does not occur anywhere in the document can never match, so it is rejected
+ * before {@link Selector#matches} is called and is not carried any further.
+ * False positives only mean that such a chain is evaluated as usual.
+ */
+final class SelectorFilter {
+    private static final int NAME = 0x4e414d45;
+    private static final int ID = 0x49442020;
+    private static final int CLASS = 0x434c4153;
+    private static final int MAX_BITS = 1 << 22;
+
+    private final Document document;
+    private final long[] bits;
+    private final int mask;
+
+    private SelectorFilter(Document document, Keys keys) {
+        // about 8 bits per distinct key keeps false positives below 5% with two hash functions
+        int size = Integer.highestOneBit(Math.min(MAX_BITS, Math.max(512, keys.count * 8)) - 1) << 1;
+        this.document = document;
+        this.bits = new long[size >>> 6];
+        this.mask = size - 1;
+        for (int hash : keys.table) {
+            if (hash != 0) {
+                set(hash);
+                set(rehash(hash));
+            }
+        }
+    }
+
+    static SelectorFilter of(Document document, @Nullable AttributeResolver attRes, TreeResolver treeRes) {
+        Keys keys = new Keys();
+        Node root = document.getDocumentElement();
+        Node node = root;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                keys.add(nameHash(treeRes.getElementName(node)));
+                if (attRes != null) {
+                    String id = attRes.getID(node);
+                    if (id != null) {
+                        keys.add(idHash(id));
+                    }
+                    String classes = attRes.getClass(node);
+                    if (classes != null) {
+                        addClasses(keys, classes);
+                    }
+                }
+            }
+            node = next(node, root);
+        }
+        return new SelectorFilter(document, keys);
+    }
+
+    boolean isFor(@Nullable Document document) {
+        return this.document == document;
+    }
+
+    /**
+     * @return false if the selector chain needs a key that is definitely not in the document
+     */
+    boolean mightMatch(Selector selector) {
+        for (int hash : selector.getRequiredKeyHashes()) {
+            if (!isSet(hash) || !isSet(rehash(hash))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int nameHash(String name) {
+        return keyHash(name.hashCode() ^ NAME);
+    }
+
+    static int idHash(String id) {
+        return keyHash(id.hashCode() ^ ID);
+    }
+
+    static int classHash(String className) {
+        return keyHash(className.hashCode() ^ CLASS);
+    }
+
+    /**
+     * Never 0, which marks an empty slot while the keys are collected
+     */
+    private static int keyHash(int h) {
+        h = mix(h);
+        return h == 0 ? 1 : h;
+    }
+
+    private void set(int hash) {
+        int bit = hash & mask;
+        bits[bit >>> 6] |= 1L << bit;
+    }
+
+    private boolean isSet(int hash) {
+        int bit = hash & mask;
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private static int rehash(int hash) {
+        return mix(hash + 0x9e3779b9);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static void addClasses(Keys keys, String classes) {
+        int length = classes.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && Character.isWhitespace(classes.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !Character.isWhitespace(classes.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                keys.add(classHash(classes.substring(start, end)));
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Next node in document order below {@code root}, without recursion
+     */
+    @Nullable
+    private static Node next(Node node, Node root) {
+        Node child = node.getFirstChild();
+        if (child != null) {
+            return child;
+        }
+        while (node != null && node != root) {
+            Node sibling = node.getNextSibling();
+            if (sibling != null) {
+                return sibling;
+            }
+            node = node.getParentNode();
+        }
+        return null;
+    }
+
+    /**
+     * The distinct key hashes of a document, as an open addressing set using 0 as empty slot
+     */
+    private static final class Keys {
+        private int[] table = new int[256];
+        private int count;
+
+        void add(int hash) {
+            int i = hash & (table.length - 1);
+            while (table[i] != 0) {
+                if (table[i] == hash) {
+                    return;
+                }
+                i = (i + 1) & (table.length - 1);
+            }
+            table[i] = hash;
+            if (++count * 2 > table.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            int[] old = table;
+            table = new int[old.length * 2];
+            count = 0;
+            for (int hash : old) {
+                if (hash != 0) {
+                    add(hash);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.css.extend.AttributeResolver;
+import org.xhtmlrenderer.css.extend.TreeResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.xhtmlrenderer.css.newmatch.Selector.Axis.DESCENDANT_AXIS;
+import static org.xhtmlrenderer.css.newmatch.Selector.Axis.IMMEDIATE_SIBLING_AXIS;
+
+/**
+ * Buckets a list of selectors by the most selective key of the simple selector
+ * that is tested against an element: its id, one of its classes, its element
+ * name, or nothing at all for universal selectors. Only the selectors in buckets
+ * whose key can match a given element are candidates, all others are known not
+ * to match without calling {@link Selector#matches}.
+ * <p>
+ * Candidates are returned as positions in the indexed list, in ascending order,
+ * so the specificity order established when the Matcher was created is kept.
+ */
+final class SelectorIndex {
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, int[]> byId;
+    private final Map<String, int[]> byClass;
+    private final Map<String, int[]> byName;
+    private final int[] universal;
+    private final int[] descendants;
+
+    SelectorIndex(List<Selector> selectors) {
+        Map<String, List<Integer>> ids = new HashMap<>();
+        Map<String, List<Integer>> classes = new HashMap<>();
+        Map<String, List<Integer>> names = new HashMap<>();
+        List<Integer> any = new ArrayList<>();
+        List<Integer> carried = new ArrayList<>();
+
+        for (int i = 0; i < selectors.size(); i++) {
+            Selector selector = selectors.get(i);
+            if (selector.getAxis() == IMMEDIATE_SIBLING_AXIS) {
+                throw new RuntimeException("Selector axis: " + IMMEDIATE_SIBLING_AXIS);
+            }
+            if (selector.getAxis() == DESCENDANT_AXIS) {
+                carried.add(i);
+            }
+
+            String id = selector.getRequiredID();
+            String className = selector.getRequiredClass();
+            String name = selector.getName();
+            if (id != null) {
+                ids.computeIfAbsent(id, k -> new ArrayList<>()).add(i);
+            } else if (className != null) {
+                classes.computeIfAbsent(className, k -> new ArrayList<>()).add(i);
+            } else if (name != null) {
+                names.computeIfAbsent(name, k -> new ArrayList<>()).add(i);
+            } else {
+                any.add(i);
+            }
+        }
+
+        byId = toArrays(ids);
+        byClass = toArrays(classes);
+        byName = toArrays(names);
+        universal = toArray(any);
+        descendants = toArray(carried);
+    }
+
+    /**
+     * @return positions of the selectors that may match the element, in ascending order
+     */
+    int[] candidates(Node e, @Nullable AttributeResolver attRes, TreeResolver treeRes) {
+        List<int[]> buckets = new ArrayList<>(4);
+        int size = 0;
+
+        size += add(buckets, universal);
+        if (!byName.isEmpty()) {
+            size += add(buckets, byName.get(treeRes.getElementName(e)));
+        }
+        // without an AttributeResolver id and class conditions never match
+        if (attRes != null) {
+            if (!byId.isEmpty()) {
+                String id = attRes.getID(e);
+                if (id != null) {
+                    size += add(buckets, byId.get(id));
+                }
+            }
+            if (!byClass.isEmpty()) {
+                String classes = attRes.getClass(e);
+                if (classes != null) {
+                    size += addClasses(buckets, classes);
+                }
+            }
+        }
+
+        if (buckets.isEmpty()) {
+            return NONE;
+        }
+        if (buckets.size() == 1) {
+            return buckets.get(0);
+        }
+        return merge(buckets, size);
+    }
+
+    /**
+     * @return positions of the selectors on the descendant axis, which apply to
+     *         all descendants of a matching element and not only its children
+     */
+    int[] descendants() {
+        return descendants;
+    }
+
+    private int addClasses(List<int[]> buckets, String classes) {
+        int size = 0;
+        int length = classes.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && Character.isWhitespace(classes.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !Character.isWhitespace(classes.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                size += add(buckets, byClass.get(classes.substring(start, end)));
+            }
+            start = end;
+        }
+        return size;
+    }
+
+    private static int add(List<int[]> buckets, int @Nullable [] bucket) {
+        if (bucket == null || bucket.length == 0) {
+            return 0;
+        }
+        buckets.add(bucket);
+        return bucket.length;
+    }
+
+    private static int[] merge(List<int[]> buckets, int size) {
+        int[] result = new int[size];
+        int pos = 0;
+        for (int[] bucket : buckets) {
+            System.arraycopy(bucket, 0, result, pos, bucket.length);
+            pos += bucket.length;
+        }
+        Arrays.sort(result);
+
+        // the same class may be listed twice on an element
+        int unique = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[unique++] = result[i];
+            }
+        }
+        return unique == result.length ? result : Arrays.copyOf(result, unique);
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> buckets) {
+        Map<String, int[]> result = new HashMap<>(buckets.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : buckets.entrySet()) {
+            result.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> positions) {
+        if (positions.isEmpty()) {
+            return NONE;
+        }
+        int[] result = new int[positions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = positions.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,188 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.css.extend.AttributeResolver;
+import org.xhtmlrenderer.css.extend.TreeResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Measures how expensive each selector is to match, to find the rules of a
+ * stylesheet that are worth simplifying or removing. Set on a {@link Matcher},
+ * or on a {@link org.xhtmlrenderer.context.StyleReference} for the documents it
+ * styles; one profiler may be used by many matchers at once.
+ * <p>
+ * Timing every selector evaluation makes matching noticeably slower, so a
+ * profiler should only be set while profiling.
+ */
+public final class SelectorProfiler {
+    /**
+     * Notified of every evaluation of a selector, on the thread that matched it.
+     */
+    public interface Listener {
+        /**
+         * @param matched whether the element matched the selector, ignoring its dynamic pseudo-classes
+         * @param nanos   the time spent evaluating the selector
+         */
+        void selectorEvaluated(Selector selector, Node element, boolean matched, long nanos);
+    }
+
+    private final Map<Selector, SelectorProfile> profiles = new ConcurrentHashMap<>();
+    private final List<DocumentProfile> documents = new CopyOnWriteArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Includes the cascade totals of a document in the {@link #report}.
+     *
+     * @param uri        identifies the document in the report
+     * @param statistics the statistics of the matcher of the document
+     */
+    public void addDocument(String uri, MatcherStatistics statistics) {
+        documents.add(new DocumentProfile(uri, statistics));
+    }
+
+    boolean matches(Selector selector, Node e, AttributeResolver attRes, TreeResolver treeRes) {
+        long start = System.nanoTime();
+        boolean matched = selector.matches(e, attRes, treeRes);
+        long nanos = System.nanoTime() - start;
+        profile(selector).evaluated(matched, nanos);
+        for (Listener listener : listeners) {
+            listener.selectorEvaluated(selector, e, matched, nanos);
+        }
+        return matched;
+    }
+
+    boolean matchesDynamic(Selector selector, Node e, AttributeResolver attRes, TreeResolver treeRes) {
+        long start = System.nanoTime();
+        boolean matched = selector.matchesDynamic(e, attRes, treeRes);
+        profile(selector).nanos.add(System.nanoTime() - start);
+        return matched;
+    }
+
+    private SelectorProfile profile(Selector selector) {
+        return profiles.computeIfAbsent(selector, SelectorProfile::new);
+    }
+
+    /**
+     * @return the profiles of all selectors evaluated so far, the most expensive first
+     */
+    public List<SelectorProfile> getProfiles() {
+        List<SelectorProfile> result = new ArrayList<>(profiles.values());
+        result.sort(comparingLong(SelectorProfile::getNanos).reversed());
+        return result;
+    }
+
+    public List<DocumentProfile> getDocuments() {
+        return List.copyOf(documents);
+    }
+
+    /**
+     * Forgets everything measured so far.
+     */
+    public void reset() {
+        profiles.clear();
+        documents.clear();
+    }
+
+    /**
+     * @param limit how many of the most expensive selectors to list
+     * @return the cascade totals of the documents and the most expensive selectors,
+     *         one per line
+     */
+    public String report(int limit) {
+        StringBuilder result = new StringBuilder();
+        for (DocumentProfile document : documents) {
+            MatcherStatistics statistics = document.statistics();
+            result.append("%s: %d elements matched in %.3f ms, %d selectors evaluated, %d rejected, mapper hit rate %.1f%%%n"
+                    .formatted(document.uri(), statistics.getMatchedElements(), statistics.getCascadeNanos() / 1e6,
+                            statistics.getEvaluatedSelectors(), statistics.getRejectedSelectors(),
+                            statistics.getMapperHitRate() * 100));
+        }
+        result.append("%10s %12s %10s  %s%n".formatted("ms", "evaluations", "matches", "selector"));
+        List<SelectorProfile> sorted = getProfiles();
+        for (SelectorProfile profile : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            result.append("%10.3f %12d %10d  %s%n".formatted(profile.getNanos() / 1e6,
+                    profile.getEvaluations(), profile.getMatches(), profile.getSelector().toCss()));
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "%s{selectors=%d, documents=%d}".formatted(getClass().getSimpleName(), profiles.size(), documents.size());
+    }
+
+    /**
+     * The cost of one selector, summed over all elements it was evaluated against.
+     */
+    public static final class SelectorProfile {
+        private final Selector selector;
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder matches = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private SelectorProfile(Selector selector) {
+            this.selector = selector;
+        }
+
+        private void evaluated(boolean matched, long time) {
+            evaluations.increment();
+            if (matched) {
+                matches.increment();
+            }
+            nanos.add(time);
+        }
+
+        public Selector getSelector() {
+            return selector;
+        }
+
+        /**
+         * @return how many elements the selector was evaluated against
+         */
+        public long getEvaluations() {
+            return evaluations.sum();
+        }
+
+        /**
+         * @return how many of those elements matched, ignoring dynamic pseudo-classes
+         */
+        public long getMatches() {
+            return matches.sum();
+        }
+
+        /**
+         * @return the time spent evaluating the selector, including its dynamic pseudo-classes
+         */
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "%s{%s, evaluations=%d, matches=%d, nanos=%d}".formatted(getClass().getSimpleName(),
+                    selector.toCss(), getEvaluations(), getMatches(), getNanos());
+        }
+    }
+
+    /**
+     * The cascade totals of a document, kept up to date as its elements are styled.
+     */
+    public record DocumentProfile(String uri, MatcherStatistics statistics) {
+    }
+}
@@ -74,6 +74,9 @@ public class CSSParser {
 
     private final Map<String, String> _namespaces = new HashMap<>();
     private boolean _supportCMYKColors;
+    private char[] _chars = new char[0];
+    @Nullable
+    private String _medium;
 
     public CSSParser(CSSErrorHandler errorHandler) {
         _lexer = new Lexer(new StringReader(""));
@@ -92,10 +95,27 @@ public class CSSParser {
     }
 
     public Ruleset parseDeclaration(Origin origin, String text) {
+        return parseDeclaration(origin, chars(text), 0, text.length());
+    }
+
+    /**
+     * Parses declarations from a window of an array, which is tokenized in place
+     * and must not be changed while it is parsed.
+     */
+    public Ruleset parseDeclaration(Origin origin, char[] chars, int start, int end) {
+        reset(chars, start, end);
+        return declarations(origin);
+    }
+
+    public Ruleset parseDeclaration(Origin origin, Reader reader) {
+        reset(reader);
+        return declarations(origin);
+    }
+
+    private Ruleset declarations(Origin origin) {
         try {
             // XXX Set this to something more reasonable
             _uri = "style attribute";
-            reset(new StringReader(text));
 
             skip_whitespace();
 
@@ -118,7 +138,7 @@ public class CSSParser {
     public PropertyValue parsePropertyValue(CSSName cssName, Origin origin, String expr) {
         _uri = cssName + " property value";
         try {
-            reset(new StringReader(expr));
+            reset(chars(expr), 0, expr.length());
             List<PropertyValue> values = expr(
                     cssName.equals(CSSName.FONT_FAMILY) ||
                     cssName.equals(CSSName.FONT_SHORTHAND) ||
@@ -410,7 +430,10 @@ public class CSSParser {
                         }
                     }
                     t = next();
-                    if (t == Token.TK_LBRACE) {
+                    if (t == Token.TK_LBRACE && _medium != null && !mediaRule.matches(_medium)) {
+                        skip_block();
+                        return;
+                    } else if (t == Token.TK_LBRACE) {
                         skip_whitespace();
                         LOOP:
                         while (true) {
@@ -1319,8 +1342,8 @@ public class CSSParser {
                     if (valid) {
                         try {
                             PropertyBuilder builder = CSSName.getPropertyBuilder(cssName);
-                            ruleset.addAllProperties(builder.buildDeclarations(
-                                    cssName, values, ruleset.getOrigin(), important, !inFontFace));
+                            ruleset.addAllProperties(PropertyDeclarationPool.getShared().intern(builder.buildDeclarations(
+                                    cssName, values, ruleset.getOrigin(), important, !inFontFace)));
                         } catch (CSSParseException e) {
                             e.setLine(getCurrentLine());
                             error(e, "declaration", true);
@@ -1848,6 +1871,24 @@ public class CSSParser {
         }
     }
 
+    /**
+     * Skips the tokens up to the end of the block whose opening brace was just read
+     */
+    private void skip_block() throws IOException {
+        int braces = 1;
+        while (braces > 0) {
+            Token t = next();
+            if (t == Token.TK_EOF) {
+                return;
+            } else if (t == Token.TK_LBRACE) {
+                braces++;
+            } else if (t == Token.TK_RBRACE) {
+                braces--;
+            }
+        }
+        skip_whitespace();
+    }
+
     private void recover(boolean needBlock, boolean stopBeforeBlockClose) throws IOException {
         int braces = 0;
         boolean foundBlock = false;
@@ -1892,6 +1933,25 @@ public class CSSParser {
         _lexer.setyyline(0);
     }
 
+    private void reset(char[] chars, int start, int end) {
+        _saved = null;
+        _namespaces.clear();
+        _lexer.yyreset(chars, start, end);
+    }
+
+    /**
+     * Copies a string into the array this parser reuses for tokenizing strings,
+     * since a string cannot be tokenized in place.
+     */
+    private char[] chars(String text) {
+        int length = text.length();
+        if (_chars.length < length) {
+            _chars = new char[Math.max(length, _chars.length * 2)];
+        }
+        text.getChars(0, length, _chars, 0);
+        return _chars;
+    }
+
     private String getRawTokenValue() {
         return _lexer.yytext();
     }
@@ -1901,14 +1961,18 @@ public class CSSParser {
     }
 
     private String getTokenValue(Token t, boolean literal) {
+        // the text is sliced from the lexer's buffer, which for declarations and
+        // property values is the parsed text itself
+        char[] ch = _lexer.yybuffer();
+        int base = _lexer.yystart();
+        int limit = base + _lexer.yylength();
         return switch (t.getType()) {
             case STRING ->
-                    processEscapes(_lexer.yytext().toCharArray(), 1, _lexer.yylength() - 1);
+                    processEscapes(ch, base + 1, limit - 1, limit);
             case HASH ->
-                    processEscapes(_lexer.yytext().toCharArray(), 1, _lexer.yylength());
+                    processEscapes(ch, base + 1, limit, limit);
             case URI -> {
-                char[] ch = _lexer.yytext().toCharArray();
-                int start = 4;
+                int start = base + 4;
                 while (ch[start] == '\t' || ch[start] == '\r' ||
                         ch[start] == '\n' || ch[start] == '\f') {
                     start++;
@@ -1916,7 +1980,7 @@ public class CSSParser {
                 if (ch[start] == '\'' || ch[start] == '"') {
                     start++;
                 }
-                int end = ch.length - 2;
+                int end = limit - 2;
                 while (ch[end] == '\t' || ch[end] == '\r' ||
                         ch[end] == '\n' || ch[end] == '\f') {
                     end--;
@@ -1925,7 +1989,7 @@ public class CSSParser {
                     end--;
                 }
 
-                String uriResult = processEscapes(ch, start, end + 1);
+                String uriResult = processEscapes(ch, start, end + 1, limit);
 
                 // Relative URIs are resolved relative to CSS file, not XHTML file
                 if (isRelativeURI(uriResult) && _uri != null) {
@@ -1946,12 +2010,11 @@ public class CSSParser {
             case AT_RULE,
                  IDENT,
                  FUNCTION -> {
-                int start = 0;
-                int count = _lexer.yylength();
+                int start = base;
                 if (t.getType() == AT_RULE) {
                     start++;
                 }
-                String result = processEscapes(_lexer.yytext().toCharArray(), start, count);
+                String result = processEscapes(ch, start, limit, limit);
                 if (!literal) {
                     result = result.toLowerCase(ROOT);
                 }
@@ -1985,8 +2048,14 @@ public class CSSParser {
         return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
     }
 
-    private static String processEscapes(char[] ch, int start, int end) {
-        StringBuilder result = new StringBuilder(ch.length + 10);
+    /**
+     * @param limit the end of the token, which may extend beyond {@code end}
+     */
+    private static String processEscapes(char[] ch, int start, int end, int limit) {
+        if (indexOf(ch, '\\', start, end) < 0) {
+            return new String(ch, start, end - start);
+        }
+        StringBuilder result = new StringBuilder(end - start);
 
         for (int i = start; i < end; i++) {
             char c = ch[i];
@@ -1997,10 +2066,10 @@ public class CSSParser {
                     i += 2;
                     continue;
                 } else {
-                    if ((i+1) < ch.length && (ch[i+1] == '\n' || ch[i+1] == '\r' || ch[i+1] == '\f')) {
+                    if ((i+1) < limit && (ch[i+1] == '\n' || ch[i+1] == '\r' || ch[i+1] == '\f')) {
                         i++;
                         continue;
-                    } else if ((i+1) >= ch.length) {
+                    } else if ((i+1) >= limit) {
                        // process \ escaped (\\)
                        result.append(c);
                        continue;
@@ -2038,6 +2107,24 @@ public class CSSParser {
         return result.toString();
     }
 
+    private static int indexOf(char[] ch, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (ch[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param medium the only medium whose {@code @media} rules are parsed; the rules
+     *               for other media are skipped and left out of the stylesheet.
+     *               Null to parse the rules for all media.
+     */
+    public void setMedium(@Nullable String medium) {
+        _medium = medium;
+    }
+
     public boolean isSupportCMYKColors() {
         return _supportCMYKColors;
     }
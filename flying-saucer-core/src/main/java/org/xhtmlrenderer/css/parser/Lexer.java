@@ -39,6 +39,8 @@ class Lexer {
   /** initial size of the lookahead buffer */
   private static final int ZZ_BUFFERSIZE = 16384;
 
+  private static final char[] ZZ_NO_INPUT = new char[0];
+
   /** lexical states */
   public static final int YYINITIAL = 0;
 
@@ -1503,8 +1505,9 @@ class Lexer {
   private int zzLexicalState = YYINITIAL;
 
   /** this buffer contains the current text to be matched and is
-      the source of the yytext() string */
-  private char[] zzBuffer = new char[ZZ_BUFFERSIZE];
+      the source of the yytext() string; it is allocated when input is first
+      read, or borrowed from the caller by yyreset(char[], int, int) */
+  private char[] zzBuffer = ZZ_NO_INPUT;
 
   /** the text position at the last accepting state */
   private int zzMarkedPos;
@@ -1537,6 +1540,32 @@ class Lexer {
     	this.yyline = i;
 	}
 
+    /**
+     * Resets the scanner to tokenize a window of an array in place, without
+     * copying it. The array must not be changed until scanning is done.
+     */
+    void yyreset(char[] chars, int start, int end) {
+        zzReader = null;
+        zzBuffer = chars;
+        zzAtEOF = true;
+        zzStartRead = zzCurrentPos = zzMarkedPos = zzPushbackPos = start;
+        zzEndRead = end;
+        yyline = 0;
+        zzLexicalState = YYINITIAL;
+    }
+
+    /**
+     * @return the array holding the text of the current token, which starts at
+     *         {@link #yystart()} and is valid until the next token is scanned
+     */
+    char[] yybuffer() {
+        return zzBuffer;
+    }
+
+    int yystart() {
+        return zzStartRead;
+    }
+
 
   /**
    * Creates a new scanner
@@ -1602,7 +1631,7 @@ class Lexer {
     /* is the buffer big enough? */
     if (zzCurrentPos >= zzBuffer.length) {
       /* if not: blow it up */
-      char[] newBuffer = new char[zzCurrentPos*2];
+      char[] newBuffer = new char[Math.max(ZZ_BUFFERSIZE, zzCurrentPos*2)];
       System.arraycopy(zzBuffer, 0, newBuffer, 0, zzBuffer.length);
       zzBuffer = newBuffer;
     }
@@ -1644,6 +1673,10 @@ class Lexer {
    * @param reader   the new input stream
    */
   public final void yyreset(java.io.Reader reader) {
+    if (zzReader == null) {
+      /* do not read into an array borrowed by yyreset(char[], int, int) */
+      zzBuffer = ZZ_NO_INPUT;
+    }
     zzReader = reader;
     zzAtEOF  = false;
     zzEndRead = zzStartRead = 0;
@@ -0,0 +1,122 @@
+package org.xhtmlrenderer.css.parser;
+
+import org.jspecify.annotations.Nullable;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
+import org.xhtmlrenderer.util.Configuration;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares equal property declarations, like {@code color: #000} or {@code margin-top: 0},
+ * between all stylesheets and style attributes parsed by the process. Besides saving
+ * memory in cached stylesheets, this lets caches keyed by declarations compare them
+ * by identity most of the time.
+ * <p>
+ * Only declarations with a single identifier, color, string, URI or numeric value
+ * are shared. Lists and functions are left alone. When the pool is full, a quarter
+ * of the declarations is dropped in no particular order.
+ */
+public final class PropertyDeclarationPool {
+    private static final PropertyDeclarationPool shared =
+            new PropertyDeclarationPool(Configuration.valueAsInt("xr.css.declaration-pool.size", 16384));
+
+    private final int capacity;
+    private final Map<Key, PropertyDeclaration> declarations = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PropertyDeclarationPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the pool used by {@link CSSParser} and stylesheet snapshots
+     */
+    public static PropertyDeclarationPool getShared() {
+        return shared;
+    }
+
+    /**
+     * @return a declaration equal to the given one, shared by everybody interning an
+     *         equal declaration, or the given declaration if it is not poolable
+     */
+    public PropertyDeclaration intern(PropertyDeclaration declaration) {
+        if (capacity <= 0 || !(declaration.getValue() instanceof PropertyValue value)) {
+            return declaration;
+        }
+        Key key = Key.of(declaration, value);
+        if (key == null) {
+            return declaration;
+        }
+
+        PropertyDeclaration pooled = declarations.get(key);
+        if (pooled != null) {
+            hits.increment();
+            return pooled;
+        }
+
+        misses.increment();
+        if (declarations.size() >= capacity) {
+            evict();
+        }
+        PropertyDeclaration previous = declarations.putIfAbsent(key, declaration);
+        return previous == null ? declaration : previous;
+    }
+
+    public List<PropertyDeclaration> intern(List<PropertyDeclaration> declarations) {
+        if (capacity <= 0) {
+            return declarations;
+        }
+        List<PropertyDeclaration> result = new ArrayList<>(declarations.size());
+        for (PropertyDeclaration declaration : declarations) {
+            result.add(intern(declaration));
+        }
+        return result;
+    }
+
+    private void evict() {
+        int target = capacity - capacity / 4;
+        for (Iterator<Key> it = declarations.keySet().iterator(); it.hasNext() && declarations.size() > target; ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return declarations.size();
+    }
+
+    public void clear() {
+        declarations.clear();
+    }
+
+    private record Key(CSSName cssName, boolean important, Origin origin, short primitiveType,
+                       PropertyValue.Type valueType, String cssText, @Nullable String stringValue,
+                       float floatValue, @Nullable Token operator) {
+        @Nullable
+        static Key of(PropertyDeclaration declaration, PropertyValue value) {
+            return switch (value.getPropertyValueType()) {
+                case VALUE_TYPE_LIST, VALUE_TYPE_FUNCTION -> null;
+                default -> value.getStringArrayValue().length > 0 ? null :
+                        new Key(declaration.getCSSName(), declaration.isImportant(), declaration.getOrigin(),
+                                value.getPrimitiveType(), value.getPropertyValueType(), value.getCssText(),
+                                value.getStringValue(), value.getFloatValue(), value.getOperator());
+            };
+        }
+    }
+}
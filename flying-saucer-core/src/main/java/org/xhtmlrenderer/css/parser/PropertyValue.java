@@ -28,8 +28,12 @@ import org.w3c.dom.css.Counter;
 import org.w3c.dom.css.RGBColor;
 import org.w3c.dom.css.Rect;
 import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.sheet.StylesheetSnapshot;
+import org.xhtmlrenderer.css.style.FSDerivedValue;
 import org.xhtmlrenderer.util.ArrayUtil;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Collections.emptyList;
@@ -78,6 +82,12 @@ public class PropertyValue implements CSSPrimitiveValue {
     @Nullable
     private final FSFunction _function;
 
+    /**
+     * The derived value shared by all styles using this value, if it does not depend on the style
+     */
+    @Nullable
+    private FSDerivedValue _sharedDerivedValue;
+
     public PropertyValue(short type, float floatValue, String cssText) {
         this(type, floatValue, cssText, null);
     }
@@ -186,6 +196,145 @@ public class PropertyValue implements CSSPrimitiveValue {
         _operator = operatorToken;
     }
 
+    private PropertyValue(short type, short cssValueType, @Nullable String stringValue, float floatValue,
+                          String @Nullable [] stringArrayValue, String cssText, @Nullable FSColor color,
+                          @Nullable IdentValue identValue, Type propertyValueType, @Nullable Token operator,
+                          List<?> values, @Nullable FSFunction function) {
+        _type = type;
+        _cssValueType = cssValueType;
+        _stringValue = stringValue;
+        _floatValue = floatValue;
+        _stringArrayValue = stringArrayValue;
+        _cssText = cssText;
+        _FSColor = color;
+        _identValue = identValue;
+        _propertyValueType = propertyValueType;
+        _operator = operator;
+        _values = values;
+        _function = function;
+    }
+
+    /**
+     * Writes this value to a {@link StylesheetSnapshot}, to be read back by {@link #readSnapshot}
+     */
+    public void writeSnapshot(StylesheetSnapshot.Writer out) throws IOException {
+        out.writeInt(_type);
+        out.writeInt(_cssValueType);
+        out.writeString(_stringValue);
+        out.writeFloat(_floatValue);
+        out.writeInt(_stringArrayValue == null ? -1 : _stringArrayValue.length);
+        if (_stringArrayValue != null) {
+            for (String value : _stringArrayValue) {
+                out.writeString(value);
+            }
+        }
+        out.writeString(_cssText);
+        if (_FSColor instanceof FSRGBColor rgb) {
+            out.writeInt(1);
+            out.writeInt(rgb.getRed());
+            out.writeInt(rgb.getGreen());
+            out.writeInt(rgb.getBlue());
+        } else if (_FSColor instanceof FSCMYKColor cmyk) {
+            out.usesCMYKColors();
+            out.writeInt(2);
+            out.writeFloat(cmyk.getCyan());
+            out.writeFloat(cmyk.getMagenta());
+            out.writeFloat(cmyk.getYellow());
+            out.writeFloat(cmyk.getBlack());
+        } else if (_FSColor == null) {
+            out.writeInt(0);
+        } else {
+            throw new IOException("Unsupported color " + _FSColor);
+        }
+        out.writeString(_identValue == null ? null : _identValue.asString());
+        out.writeString(_propertyValueType.name());
+        if (_operator == null) {
+            out.writeInt(0);
+        } else if (_operator == Token.TK_COMMA) {
+            out.writeInt(1);
+        } else if (_operator == Token.TK_VIRGULE) {
+            out.writeInt(2);
+        } else {
+            throw new IOException("Unsupported operator " + _operator);
+        }
+        out.writeInt(_values.size());
+        for (Object value : _values) {
+            if (value instanceof PropertyValue propertyValue) {
+                out.writeInt(0);
+                propertyValue.writeSnapshot(out);
+            } else if (value instanceof CounterData counter) {
+                out.writeInt(1);
+                out.writeString(counter.getName());
+                out.writeInt(counter.getValue());
+            } else {
+                throw new IOException("Unsupported value " + value);
+            }
+        }
+        out.writeBoolean(_function != null);
+        if (_function != null) {
+            out.writeString(_function.getName());
+            out.writeInt(_function.getParameters().size());
+            for (PropertyValue parameter : _function.getParameters()) {
+                parameter.writeSnapshot(out);
+            }
+        }
+    }
+
+    /**
+     * Reads a value written by {@link #writeSnapshot}
+     */
+    public static PropertyValue readSnapshot(StylesheetSnapshot.Reader in) throws IOException {
+        short type = (short) in.readInt();
+        short cssValueType = (short) in.readInt();
+        String stringValue = in.readRelocatable();
+        float floatValue = in.readFloat();
+        int stringArrayLength = in.readInt();
+        String[] stringArrayValue = null;
+        if (stringArrayLength >= 0) {
+            stringArrayValue = new String[stringArrayLength];
+            for (int i = 0; i < stringArrayLength; i++) {
+                stringArrayValue[i] = in.readRequiredString();
+            }
+        }
+        String cssText = in.readRequiredRelocatable();
+        FSColor color = switch (in.readInt()) {
+            case 0 -> null;
+            case 1 -> new FSRGBColor(in.readInt(), in.readInt(), in.readInt());
+            case 2 -> new FSCMYKColor(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+            default -> throw new IOException("Corrupt stylesheet snapshot");
+        };
+        String ident = in.readString();
+        IdentValue identValue = ident == null ? null : IdentValue.valueOf(ident);
+        Type propertyValueType = Type.valueOf(in.readRequiredString());
+        Token operator = switch (in.readInt()) {
+            case 0 -> null;
+            case 1 -> Token.TK_COMMA;
+            case 2 -> Token.TK_VIRGULE;
+            default -> throw new IOException("Corrupt stylesheet snapshot");
+        };
+        int valueCount = in.readInt();
+        List<Object> values = valueCount == 0 ? emptyList() : new ArrayList<>(valueCount);
+        for (int i = 0; i < valueCount; i++) {
+            values.add(switch (in.readInt()) {
+                case 0 -> readSnapshot(in);
+                case 1 -> new CounterData(in.readRequiredString(), in.readInt());
+                default -> throw new IOException("Corrupt stylesheet snapshot");
+            });
+        }
+        FSFunction function = null;
+        if (in.readBoolean()) {
+            String name = in.readRequiredString();
+            int parameterCount = in.readInt();
+            List<PropertyValue> parameters = new ArrayList<>(parameterCount);
+            for (int i = 0; i < parameterCount; i++) {
+                parameters.add(readSnapshot(in));
+            }
+            function = new FSFunction(name, parameters);
+        }
+        return new PropertyValue(type, cssValueType, stringValue, floatValue, stringArrayValue, cssText, color,
+                identValue, propertyValueType, operator, values, function);
+    }
+
     @Override
     public Counter getCounterValue() throws DOMException {
         throw new UnsupportedOperationException("Unsupported operation: getCounterValue");
@@ -260,6 +409,19 @@ public class PropertyValue implements CSSPrimitiveValue {
         _identValue = identValue;
     }
 
+    @Nullable
+    public FSDerivedValue getSharedDerivedValue() {
+        return _sharedDerivedValue;
+    }
+
+    /**
+     * Remembers the derived value of this value. Only to be used for immutable derived
+     * values that do not depend on the style they were derived for.
+     */
+    public void setSharedDerivedValue(FSDerivedValue derivedValue) {
+        _sharedDerivedValue = derivedValue;
+    }
+
     public Type getPropertyValueType() {
         return _propertyValueType;
     }
@@ -288,16 +450,15 @@ public class PropertyValue implements CSSPrimitiveValue {
         return _function;
     }
 
+    /**
+     * The identifier of an {@link Type#VALUE_TYPE_IDENT} value, looked up from
+     * its string value if it was not given on construction.
+     */
     @CheckReturnValue
-    public String getFingerprint() {
-        return switch (getPropertyValueType()) {
-            case VALUE_TYPE_IDENT -> {
-                if (_identValue == null) {
-                    _identValue = IdentValue.getByIdentString(getStringValue());
-                }
-                yield "I" + _identValue.FS_ID;
-            }
-            default -> getCssText();
-        };
+    public IdentValue getIdentValueOrLookup() {
+        if (_identValue == null) {
+            _identValue = IdentValue.getByIdentString(getStringValue());
+        }
+        return _identValue;
     }
 }
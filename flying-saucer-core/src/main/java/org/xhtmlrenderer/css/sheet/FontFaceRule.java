@@ -29,6 +29,7 @@ public class FontFaceRule implements RulesetContainer {
     private final Origin _origin;
     private Ruleset _ruleset;
     private CalculatedStyle _calculatedStyle;
+    private boolean _frozen;
 
     public FontFaceRule(Origin origin) {
         _origin = origin;
@@ -36,6 +37,9 @@ public class FontFaceRule implements RulesetContainer {
 
     @Override
     public void addContent(Ruleset ruleset) {
+        if (_frozen) {
+            throw new UnsupportedOperationException("Font face rule is frozen");
+        }
         if (_ruleset != null) {
             throw new XRRuntimeException("Ruleset can only be set once");
         }
@@ -47,6 +51,20 @@ public class FontFaceRule implements RulesetContainer {
         return _origin;
     }
 
+    Ruleset getRuleset() {
+        return _ruleset;
+    }
+
+    /**
+     * Makes this rule and its ruleset read-only, see {@link Stylesheet#freeze()}
+     */
+    void freeze() {
+        if (_ruleset != null) {
+            _ruleset.freeze();
+        }
+        _frozen = true;
+    }
+
     public CalculatedStyle getCalculatedStyle() {
         if (_calculatedStyle == null) {
             _calculatedStyle = new EmptyStyle().deriveStyle(
@@ -25,18 +25,21 @@ import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
 import java.util.ArrayList;
 import java.util.List;
 
+import static java.util.Collections.unmodifiableList;
 import static java.util.Locale.ROOT;
 
 public class MediaRule implements RulesetContainer {
     private final List<String> _mediaTypes = new ArrayList<>();
     private final List<Ruleset> _contents = new ArrayList<>();
     private final Origin _origin;
+    private boolean _frozen;
 
     public MediaRule(Origin origin) {
         _origin = origin;
     }
 
     public void addMedium(String medium) {
+        checkNotFrozen();
         _mediaTypes.add(medium);
     }
 
@@ -48,11 +51,30 @@ public class MediaRule implements RulesetContainer {
 
     @Override
     public void addContent(Ruleset ruleset) {
+        checkNotFrozen();
         _contents.add(ruleset);
     }
 
     public List<Ruleset> getContents() {
-        return _contents;
+        return _frozen ? unmodifiableList(_contents) : _contents;
+    }
+
+    List<String> getMediaTypes() {
+        return _frozen ? unmodifiableList(_mediaTypes) : _mediaTypes;
+    }
+
+    /**
+     * Makes this rule and its rulesets read-only, see {@link Stylesheet#freeze()}
+     */
+    void freeze() {
+        _contents.forEach(Ruleset::freeze);
+        _frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (_frozen) {
+            throw new UnsupportedOperationException("Media rule is frozen");
+        }
     }
 
     @Override
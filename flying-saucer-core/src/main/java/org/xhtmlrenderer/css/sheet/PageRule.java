@@ -27,6 +27,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
 public class PageRule implements RulesetContainer {
     private final String _name;
     private final String _pseudoPage;
@@ -36,6 +39,7 @@ public class PageRule implements RulesetContainer {
     private final Map<MarginBoxName, List<PropertyDeclaration>> _marginBoxes = new HashMap<>();
 
     private int _pos;
+    private boolean _frozen;
 
     private final int _specificityF;
     private final int _specificityG;
@@ -79,7 +83,7 @@ public class PageRule implements RulesetContainer {
     }
 
     public Map<MarginBoxName, List<PropertyDeclaration>> getMarginBoxes() {
-        return _marginBoxes;
+        return _frozen ? unmodifiableMap(_marginBoxes) : _marginBoxes;
     }
 
     public long getOrder() {
@@ -110,6 +114,22 @@ public class PageRule implements RulesetContainer {
     }
 
     public void setPos(int pos) {
+        checkNotFrozen();
         _pos = pos;
     }
+
+    /**
+     * Makes this rule, its ruleset and its margin boxes read-only, see {@link Stylesheet#freeze()}
+     */
+    void freeze() {
+        _ruleset.freeze();
+        _marginBoxes.replaceAll((name, properties) -> unmodifiableList(properties));
+        _frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (_frozen) {
+            throw new UnsupportedOperationException("Page rule is frozen");
+        }
+    }
 }
@@ -49,8 +49,7 @@ public class PropertyDeclaration {
 
     private final Origin origin;
     private IdentValue _identVal;
-    private boolean identIsSet;
-    private String _fingerprint;
+    private long _structuralHash;
 
     /**
      * ImportanceAndOrigin of stylesheet - how many different
@@ -115,22 +114,72 @@ public class PropertyDeclaration {
     }
 
     public IdentValue asIdentValue() {
-        if (!identIsSet) {
-            _identVal = IdentValue.getByIdentString(cssPrimitiveValue.getCssText());
-            identIsSet = true;
+        // declarations are shared between threads, so only publish the complete value
+        IdentValue ident = _identVal;
+        if (ident == null) {
+            ident = IdentValue.getByIdentString(cssPrimitiveValue.getCssText());
+            _identVal = ident;
         }
-        return _identVal;
+        return ident;
     }
 
     public String getDeclarationStandardText() {
         return cssName + ": " + cssPrimitiveValue.getCssText() + ";";
     }
 
-    public String getFingerprint() {
-        if (_fingerprint == null) {
-            _fingerprint = 'P' + cssName.FS_ID + ':' + ((PropertyValue)cssPrimitiveValue).getFingerprint() + ';';
+    /**
+     * Returns a 64-bit hash of the property name and value, equal for
+     * declarations that {@link #hasSameValue(PropertyDeclaration) have the same value}.
+     * Importance and origin are not part of the hash, as they no longer matter
+     * once the declaration has won the cascade.
+     */
+    public long getStructuralHash() {
+        long hash = _structuralHash;
+        if (hash == 0) {
+            PropertyValue value = (PropertyValue) cssPrimitiveValue;
+            long valueHash = value.getPropertyValueType() == PropertyValue.Type.VALUE_TYPE_IDENT ?
+                    value.getIdentValueOrLookup().FS_ID :
+                    hash64(value.getCssText());
+            // 0 means not computed yet
+            hash = mix(cssName.FS_ID * 0x9E3779B97F4A7C15L + valueHash) | 1;
+            _structuralHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Whether this declaration sets the same property to the same value as the
+     * other one: the same identifier, or else the same CSS text.
+     */
+    public boolean hasSameValue(PropertyDeclaration other) {
+        if (this == other) {
+            return true;
         }
-        return _fingerprint;
+        if (cssName != other.cssName || getStructuralHash() != other.getStructuralHash()) {
+            return false;
+        }
+        PropertyValue value = (PropertyValue) cssPrimitiveValue;
+        PropertyValue otherValue = (PropertyValue) other.cssPrimitiveValue;
+        boolean ident = value.getPropertyValueType() == PropertyValue.Type.VALUE_TYPE_IDENT;
+        boolean otherIdent = otherValue.getPropertyValueType() == PropertyValue.Type.VALUE_TYPE_IDENT;
+        if (ident || otherIdent) {
+            return ident && otherIdent && value.getIdentValueOrLookup() == otherValue.getIdentValueOrLookup();
+        }
+        return value.getCssText().equals(otherValue.getCssText());
+    }
+
+    private static long hash64(String text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB93FE1A85B31L;
+        return hash ^ (hash >>> 33);
     }
 
     /**
@@ -35,6 +35,7 @@ public class Ruleset {
     private final Origin _origin;
     private final List<PropertyDeclaration> _props = new ArrayList<>();
     private final List<Selector> _fsSelectors = new ArrayList<>();
+    private boolean _frozen;
 
     public Ruleset(Origin orig) {
         _origin = orig;
@@ -51,19 +52,42 @@ public class Ruleset {
     }
 
     public void addProperty(PropertyDeclaration decl) {
+        checkNotFrozen();
         _props.add(decl);
     }
 
     public void addAllProperties(List<PropertyDeclaration> props) {
+        checkNotFrozen();
         _props.addAll(props);
     }
 
     public void addFSSelector(Selector selector) {
+        checkNotFrozen();
         _fsSelectors.add(selector);
     }
 
+    /**
+     * Makes this ruleset read-only, so that it can be shared between documents and threads.
+     *
+     * @return this ruleset
+     */
+    public Ruleset freeze() {
+        _frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return _frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (_frozen) {
+            throw new UnsupportedOperationException("Ruleset is frozen");
+        }
+    }
+
     public List<Selector> getFSSelectors() {
-        return _fsSelectors;
+        return _frozen ? Collections.unmodifiableList(_fsSelectors) : _fsSelectors;
     }
 
     public Origin getOrigin() {
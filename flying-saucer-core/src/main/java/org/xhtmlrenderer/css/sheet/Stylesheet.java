@@ -19,11 +19,14 @@
  */
 package org.xhtmlrenderer.css.sheet;
 
+import org.jspecify.annotations.Nullable;
 import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static java.util.Collections.unmodifiableList;
+
 
 /**
  * A representation of a CSS style sheet. A Stylesheet has the sheet's rules in
@@ -46,6 +49,9 @@ public class Stylesheet implements RulesetContainer {
     private final List<FontFaceRule> _fontFaceRules = new ArrayList<>();
     private final List<StylesheetInfo> _importRules = new ArrayList<>();
     private final List<Object> _contents = new ArrayList<>();
+    @Nullable
+    private String _contentHash;
+    private boolean _frozen;
 
     /**
      * Creates a new instance of Stylesheet
@@ -76,35 +82,85 @@ public class Stylesheet implements RulesetContainer {
 
     @Override
     public void addContent(Ruleset ruleset) {
+        checkNotFrozen();
         _contents.add(ruleset);
     }
 
     public void addContent(MediaRule rule) {
+        checkNotFrozen();
         _contents.add(rule);
     }
 
     public void addContent(PageRule rule) {
+        checkNotFrozen();
         _contents.add(rule);
     }
 
     public List<Object> getContents() {
-        return _contents;
+        return _frozen ? unmodifiableList(_contents) : _contents;
     }
 
     public void addImportRule(StylesheetInfo info) {
+        checkNotFrozen();
         _importRules.add(info);
     }
 
     public List<StylesheetInfo> getImportRules() {
-        return _importRules;
+        return _frozen ? unmodifiableList(_importRules) : _importRules;
     }
 
     public void addFontFaceRule(FontFaceRule rule) {
+        checkNotFrozen();
         _fontFaceRules.add(rule);
     }
 
     public List<FontFaceRule> getFontFaceRules() {
-        return _fontFaceRules;
+        return _frozen ? unmodifiableList(_fontFaceRules) : _fontFaceRules;
+    }
+
+    /**
+     * @return the {@link StylesheetSnapshot#hash hash} of the CSS this stylesheet was
+     *         parsed from, or null if it is not known
+     */
+    @Nullable
+    public String getContentHash() {
+        return _contentHash;
+    }
+
+    public void setContentHash(@Nullable String contentHash) {
+        checkNotFrozen();
+        _contentHash = contentHash;
+    }
+
+    /**
+     * Makes this stylesheet and all its rules and rulesets read-only, so that it can
+     * be shared between documents and threads.
+     *
+     * @return this stylesheet
+     */
+    public Stylesheet freeze() {
+        for (Object content : _contents) {
+            if (content instanceof Ruleset ruleset) {
+                ruleset.freeze();
+            } else if (content instanceof MediaRule mediaRule) {
+                mediaRule.freeze();
+            } else if (content instanceof PageRule pageRule) {
+                pageRule.freeze();
+            }
+        }
+        _fontFaceRules.forEach(FontFaceRule::freeze);
+        _frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return _frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (_frozen) {
+            throw new UnsupportedOperationException("Stylesheet is frozen: " + _uri);
+        }
     }
 
 }
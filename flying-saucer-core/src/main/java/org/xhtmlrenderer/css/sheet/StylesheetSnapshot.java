@@ -0,0 +1,465 @@
+package org.xhtmlrenderer.css.sheet;
+
+import org.jspecify.annotations.Nullable;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.constants.MarginBoxName;
+import org.xhtmlrenderer.css.newmatch.Selector;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.parser.PropertyDeclarationPool;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
+import org.xhtmlrenderer.util.XRLog;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+/**
+ * A binary form of a parsed {@link Stylesheet}, which loads much faster than the
+ * CSS it was compiled from.
+ * <p>
+ * Snapshots are compiled ahead of time, for example in a Maven build:
+ * <pre>
+ * java org.xhtmlrenderer.css.sheet.StylesheetSnapshot target/classes/META-INF/flying-saucer/css-snapshots theme.css
+ * </pre>
+ * {@link org.xhtmlrenderer.context.StylesheetFactoryImpl} then loads the snapshot named after
+ * the {@link #hash(String) hash} of a stylesheet from {@value #RESOURCE_DIRECTORY} instead of
+ * parsing the stylesheet. A snapshot is ignored if it was written by another format version,
+ * or for another set of properties and identifiers.
+ * <p>
+ * The CSS is compiled against a placeholder URI, and relative URLs are moved to the URI
+ * the stylesheet is loaded from. Stylesheets importing from a parent directory
+ * can not be compiled. The origin is not part of a snapshot either.
+ */
+public final class StylesheetSnapshot {
+    public static final String RESOURCE_DIRECTORY = "META-INF/flying-saucer/css-snapshots/";
+    public static final String EXTENSION = ".fss";
+
+    private static final String BASE_ROOT = "snapshot://flying-saucer";
+    private static final String BASE_PARENT = BASE_ROOT + "/parent/";
+    private static final String BASE_DIRECTORY = BASE_PARENT + "stylesheet/";
+    private static final String BASE_URI = BASE_DIRECTORY + "stylesheet.css";
+
+    private static final int MAGIC = 0x46534353;
+    private static final int VERSION = 1;
+
+    private static final int RULESET = 0;
+    private static final int MEDIA_RULE = 1;
+    private static final int PAGE_RULE = 2;
+
+    private StylesheetSnapshot() {
+    }
+
+    /**
+     * @return the SHA-256 of the CSS, in hex, which names its snapshot
+     */
+    public static String hash(String css) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(css.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses the CSS into a stylesheet that can be {@link #write written} as a snapshot
+     */
+    public static Stylesheet compile(String css) throws IOException {
+        CSSParser parser = new CSSParser((uri, message) -> XRLog.cssParse(Level.WARNING, "(" + uri + ") " + message));
+        parser.setSupportCMYKColors(true);
+        return parser.parseStylesheet(BASE_URI, AUTHOR, new StringReader(css));
+    }
+
+    /**
+     * @param stylesheet a stylesheet {@link #compile compiled} from the CSS
+     * @param hash       the {@link #hash(String) hash} of the CSS
+     */
+    public static void write(Stylesheet stylesheet, String hash, OutputStream out) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Writer writer = new Writer(new DataOutputStream(body));
+        writer.writeStylesheet(stylesheet);
+        writer.out.flush();
+
+        // the header is written last, because only now it is known whether CMYK colors are used
+        Writer header = new Writer(new DataOutputStream(out));
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(CSSName.countCSSNames());
+        header.writeInt(IdentValue.getIdentCount());
+        header.writeText(hash);
+        header.writeBoolean(writer.usesCMYKColors);
+        body.writeTo(header.out);
+        header.out.flush();
+    }
+
+    /**
+     * @param hash              the {@link #hash(String) hash} of the CSS the stylesheet is loaded for
+     * @param uri               the URI the stylesheet is loaded from
+     * @param origin            the origin of the stylesheet
+     * @param supportCMYKColors whether the stylesheet may contain CMYK colors
+     * @throws IOException if the snapshot can not be read, or does not fit the arguments or this version
+     */
+    public static Stylesheet read(InputStream in, String hash, String uri, Origin origin, boolean supportCMYKColors) throws IOException {
+        // reading from a buffer is several times faster than from a DataInputStream
+        Reader reader = new Reader(ByteBuffer.wrap(in.readAllBytes()), uri, origin);
+        try {
+            if (reader.readInt() != MAGIC) {
+                throw new IOException("Not a stylesheet snapshot");
+            }
+            if (reader.readInt() != VERSION || reader.readInt() != CSSName.countCSSNames() || reader.readInt() != IdentValue.getIdentCount()) {
+                throw new IOException("Stylesheet snapshot was written by another version");
+            }
+            if (!hash.equals(reader.readText())) {
+                throw new IOException("Stylesheet snapshot was written for other CSS");
+            }
+            if (reader.readBoolean() && !supportCMYKColors) {
+                throw new IOException("Stylesheet snapshot uses CMYK colors");
+            }
+            return reader.readStylesheet();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated stylesheet snapshot", e);
+        }
+    }
+
+    /**
+     * Compiles CSS files into snapshots, usage: {@code StylesheetSnapshot <output directory> <css file>...}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: StylesheetSnapshot <output directory> <css file>...");
+        }
+        Path directory = Path.of(args[0]);
+        Files.createDirectories(directory);
+        for (int i = 1; i < args.length; i++) {
+            String css = Files.readString(Path.of(args[i]), UTF_8);
+            String hash = hash(css);
+            Path snapshot = directory.resolve(hash + EXTENSION);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(snapshot))) {
+                write(compile(css), hash, out);
+            }
+            XRLog.cssParse("Compiled " + args[i] + " to " + snapshot);
+        }
+    }
+
+    /**
+     * Moves a URL resolved against the placeholder URI to the actual URI, the way
+     * {@link CSSParser} resolves relative and server relative URLs
+     */
+    static String relocate(String value, String uri) {
+        if (!value.startsWith(BASE_ROOT)) {
+            return value;
+        }
+        if (value.startsWith(BASE_DIRECTORY)) {
+            String relative = value.substring(BASE_DIRECTORY.length());
+            int lastSlash = uri.lastIndexOf('/');
+            return lastSlash == -1 ? relative : uri.substring(0, lastSlash + 1) + relative;
+        }
+        String serverRelative = value.substring(BASE_ROOT.length());
+        int uriOffset = uri.indexOf("://") + 3;
+        int firstSlashAfterProtocol = uri.substring(uriOffset).indexOf('/');
+        return firstSlashAfterProtocol == -1 ? serverRelative : uri.substring(0, uriOffset + firstSlashAfterProtocol) + serverRelative;
+    }
+
+    /**
+     * Writes the parts of a snapshot. Strings are written once and referenced afterwards.
+     */
+    public static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private boolean usesCMYKColors;
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        public void writeInt(int value) throws IOException {
+            out.writeInt(value);
+        }
+
+        public void writeFloat(float value) throws IOException {
+            out.writeFloat(value);
+        }
+
+        public void writeBoolean(boolean value) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        public void writeString(@Nullable String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            out.writeInt(strings.size());
+            strings.put(value, strings.size());
+            writeText(value);
+        }
+
+        private void writeText(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        public void usesCMYKColors() {
+            usesCMYKColors = true;
+        }
+
+        private void writeStylesheet(Stylesheet stylesheet) throws IOException {
+            List<StylesheetInfo> imports = stylesheet.getImportRules();
+            writeInt(imports.size());
+            for (StylesheetInfo info : imports) {
+                if (info.getUri().startsWith(BASE_PARENT) && !info.getUri().startsWith(BASE_DIRECTORY)) {
+                    // @import resolves "../" away, so the actual parent directory can not be found when loading
+                    throw new IOException("Can not compile @import from a parent directory: " + info.getUri());
+                }
+                writeString(info.getUri());
+                writeStrings(info.getMedia());
+            }
+
+            List<Object> contents = stylesheet.getContents();
+            writeInt(contents.size());
+            for (Object content : contents) {
+                if (content instanceof Ruleset ruleset) {
+                    writeInt(RULESET);
+                    writeRuleset(ruleset);
+                } else if (content instanceof MediaRule mediaRule) {
+                    writeInt(MEDIA_RULE);
+                    writeStrings(mediaRule.getMediaTypes());
+                    writeInt(mediaRule.getContents().size());
+                    for (Ruleset ruleset : mediaRule.getContents()) {
+                        writeRuleset(ruleset);
+                    }
+                } else if (content instanceof PageRule pageRule) {
+                    writeInt(PAGE_RULE);
+                    writeString(pageRule.getName());
+                    writeString(pageRule.getPseudoPage());
+                    writeInt(pageRule.getMarginBoxes().size());
+                    for (Map.Entry<MarginBoxName, List<PropertyDeclaration>> marginBox : pageRule.getMarginBoxes().entrySet()) {
+                        writeString(marginBox.getKey().toString());
+                        writeDeclarations(marginBox.getValue());
+                    }
+                    writeRuleset(pageRule.getRuleset());
+                } else {
+                    throw new IOException("Unsupported stylesheet content: " + content);
+                }
+            }
+
+            List<FontFaceRule> fontFaceRules = stylesheet.getFontFaceRules();
+            writeInt(fontFaceRules.size());
+            for (FontFaceRule rule : fontFaceRules) {
+                writeRuleset(rule.getRuleset());
+            }
+        }
+
+        private void writeRuleset(Ruleset ruleset) throws IOException {
+            writeDeclarations(ruleset.getPropertyDeclarations());
+            writeInt(ruleset.getFSSelectors().size());
+            for (Selector selector : ruleset.getFSSelectors()) {
+                selector.writeSnapshot(this);
+            }
+        }
+
+        private void writeDeclarations(List<PropertyDeclaration> declarations) throws IOException {
+            writeInt(declarations.size());
+            for (PropertyDeclaration declaration : declarations) {
+                if (!(declaration.getValue() instanceof PropertyValue value)) {
+                    throw new IOException("Unsupported value of " + declaration);
+                }
+                writeString(declaration.getPropertyName());
+                writeBoolean(declaration.isImportant());
+                value.writeSnapshot(this);
+            }
+        }
+
+        private void writeStrings(List<String> values) throws IOException {
+            writeInt(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+    }
+
+    /**
+     * Reads the parts of a snapshot written by a {@link Writer}
+     */
+    public static final class Reader {
+        private final ByteBuffer in;
+        private final String uri;
+        private final Origin origin;
+        private final List<String> strings = new ArrayList<>();
+
+        private Reader(ByteBuffer in, String uri, Origin origin) {
+            this.in = in;
+            this.uri = uri;
+            this.origin = origin;
+        }
+
+        public int readInt() throws IOException {
+            return in.getInt();
+        }
+
+        public float readFloat() throws IOException {
+            return in.getFloat();
+        }
+
+        public boolean readBoolean() throws IOException {
+            return in.get() != 0;
+        }
+
+        @Nullable
+        public String readString() throws IOException {
+            int index = in.getInt();
+            if (index == -1) {
+                return null;
+            }
+            if (index < strings.size()) {
+                return strings.get(index);
+            }
+            if (index > strings.size()) {
+                throw new IOException("Corrupt stylesheet snapshot");
+            }
+            String value = readText();
+            strings.add(value);
+            return value;
+        }
+
+        private String readText() {
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            String value = new String(in.array(), in.position(), length, UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+
+        /**
+         * Reads a string that may be a URL resolved against the URI of the stylesheet
+         */
+        @Nullable
+        public String readRelocatable() throws IOException {
+            String value = readString();
+            return value == null ? null : relocate(value, uri);
+        }
+
+        public String readRequiredRelocatable() throws IOException {
+            return relocate(readRequiredString(), uri);
+        }
+
+        public Origin getOrigin() {
+            return origin;
+        }
+
+        public String readRequiredString() throws IOException {
+            String value = readString();
+            if (value == null) {
+                throw new IOException("Corrupt stylesheet snapshot");
+            }
+            return value;
+        }
+
+        private Stylesheet readStylesheet() throws IOException {
+            Stylesheet stylesheet = new Stylesheet(uri, origin);
+
+            int imports = readInt();
+            for (int i = 0; i < imports; i++) {
+                String importUri = readRequiredRelocatable();
+                stylesheet.addImportRule(new StylesheetInfo(origin, importUri, readStrings(), null));
+            }
+
+            int contents = readInt();
+            for (int i = 0; i < contents; i++) {
+                switch (readInt()) {
+                    case RULESET -> stylesheet.addContent(readRuleset());
+                    case MEDIA_RULE -> {
+                        MediaRule mediaRule = new MediaRule(origin);
+                        for (String medium : readStrings()) {
+                            mediaRule.addMedium(medium);
+                        }
+                        int rulesets = readInt();
+                        for (int j = 0; j < rulesets; j++) {
+                            mediaRule.addContent(readRuleset());
+                        }
+                        stylesheet.addContent(mediaRule);
+                    }
+                    case PAGE_RULE -> {
+                        String name = readString();
+                        String pseudoPage = readString();
+                        int count = readInt();
+                        Map<MarginBoxName, List<PropertyDeclaration>> marginBoxes = new LinkedHashMap<>();
+                        for (int j = 0; j < count; j++) {
+                            marginBoxes.put(MarginBoxName.valueOf(readRequiredString()), readDeclarations());
+                        }
+                        stylesheet.addContent(new PageRule(origin, name, pseudoPage, marginBoxes, readRuleset()));
+                    }
+                    default -> throw new IOException("Corrupt stylesheet snapshot");
+                }
+            }
+
+            int fontFaceRules = readInt();
+            for (int i = 0; i < fontFaceRules; i++) {
+                FontFaceRule rule = new FontFaceRule(origin);
+                rule.addContent(readRuleset());
+                stylesheet.addFontFaceRule(rule);
+            }
+            return stylesheet;
+        }
+
+        private Ruleset readRuleset() throws IOException {
+            Ruleset ruleset = new Ruleset(origin);
+            ruleset.addAllProperties(readDeclarations());
+            int selectors = readInt();
+            for (int i = 0; i < selectors; i++) {
+                ruleset.addFSSelector(Selector.readSnapshot(this, ruleset));
+            }
+            return ruleset;
+        }
+
+        private List<PropertyDeclaration> readDeclarations() throws IOException {
+            int count = readInt();
+            List<PropertyDeclaration> declarations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                CSSName cssName = CSSName.getByPropertyName(readRequiredString());
+                boolean important = readBoolean();
+                declarations.add(PropertyDeclarationPool.getShared().intern(
+                        new PropertyDeclaration(cssName, PropertyValue.readSnapshot(this), important, origin)));
+            }
+            return declarations;
+        }
+
+        private List<String> readStrings() throws IOException {
+            int count = readInt();
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(readRequiredString());
+            }
+            return values;
+        }
+    }
+}
@@ -116,7 +116,7 @@ public class CalculatedStyle {
     /**
      * Cache child styles of this style that have the same cascaded properties
      */
-    private final Map<String, CalculatedStyle> _childCache = new ConcurrentHashMap<>();
+    private final Map<CascadedStyle.StyleKey, CalculatedStyle> _childCache = new ConcurrentHashMap<>();
 
     /**
      * Our main array of property values defined in this style, keyed
@@ -188,8 +188,9 @@ public class CalculatedStyle {
     @NonNull
     @CheckReturnValue
     public CalculatedStyle deriveStyle(CascadedStyle matched) {
-        String fingerprint = matched.getFingerprint();
-        return _childCache.computeIfAbsent(fingerprint, (key) -> new CalculatedStyle(this, matched));
+        CascadedStyle.StyleKey key = matched.getStyleKey();
+        CalculatedStyle cached = _childCache.get(key);
+        return cached != null ? cached : _childCache.computeIfAbsent(key, (k) -> new CalculatedStyle(this, matched));
     }
 
     @Nullable
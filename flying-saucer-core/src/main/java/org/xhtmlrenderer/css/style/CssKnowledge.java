@@ -1,5 +1,6 @@
 package org.xhtmlrenderer.css.style;
 
+import org.xhtmlrenderer.css.constants.CSSName;
 import org.xhtmlrenderer.css.constants.IdentValue;
 
 import java.util.Set;
@@ -52,4 +53,18 @@ class CssKnowledge {
             IdentValue.TABLE_ROW, IdentValue.TABLE_CELL,
             IdentValue.TABLE_CAPTION, IdentValue.TABLE_COLUMN, IdentValue.TABLE_COLUMN_GROUP
     );
+
+    /**
+     * Properties that only change how boxes are painted, never their size or position
+     */
+    static final Set<CSSName> PAINT_ONLY = Set.of(
+            CSSName.COLOR, CSSName.CURSOR, CSSName.VISIBILITY,
+            CSSName.TEXT_DECORATION, CSSName.FS_TEXT_DECORATION_EXTENT,
+            CSSName.BACKGROUND_COLOR, CSSName.BACKGROUND_IMAGE, CSSName.BACKGROUND_REPEAT,
+            CSSName.BACKGROUND_ATTACHMENT, CSSName.BACKGROUND_POSITION, CSSName.BACKGROUND_SIZE,
+            CSSName.BORDER_TOP_COLOR, CSSName.BORDER_RIGHT_COLOR, CSSName.BORDER_BOTTOM_COLOR, CSSName.BORDER_LEFT_COLOR,
+            CSSName.BORDER_TOP_LEFT_RADIUS, CSSName.BORDER_TOP_RIGHT_RADIUS,
+            CSSName.BORDER_BOTTOM_RIGHT_RADIUS, CSSName.BORDER_BOTTOM_LEFT_RADIUS,
+            CSSName.OUTLINE_COLOR, CSSName.OUTLINE_STYLE, CSSName.OUTLINE_WIDTH
+    );
 }
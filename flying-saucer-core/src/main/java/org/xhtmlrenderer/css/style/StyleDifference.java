@@ -0,0 +1,66 @@
+package org.xhtmlrenderer.css.style;
+
+import org.xhtmlrenderer.css.constants.CSSName;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+import static org.xhtmlrenderer.css.style.CssKnowledge.PAINT_ONLY;
+
+/**
+ * What has to be done to show a box whose style changed, for example when the
+ * mouse moves over an element styled with {@code :hover}. The constants are
+ * ordered from the least to the most work.
+ */
+public enum StyleDifference {
+    /** The computed values are the same */
+    NONE,
+    /** Only values that do not affect layout changed, like colors and backgrounds */
+    REPAINT,
+    /** Sizes or positions of boxes may have changed */
+    RELAYOUT;
+
+    private static final List<CSSName> PRIMITIVE_PROPERTIES = primitiveProperties();
+
+    /**
+     * @return the more expensive of the two differences
+     */
+    public StyleDifference combine(StyleDifference other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+
+    /**
+     * Compares the computed values of all properties, as far as they can be told
+     * apart without a layout context: lengths are compared as specified.
+     */
+    public static StyleDifference between(CalculatedStyle before, CalculatedStyle after) {
+        if (before == after) {
+            return NONE;
+        }
+        StyleDifference result = NONE;
+        for (CSSName property : PRIMITIVE_PROPERTIES) {
+            FSDerivedValue oldValue = before.valueByName(property);
+            FSDerivedValue newValue = after.valueByName(property);
+            if (oldValue != newValue && !oldValue.asString().equals(newValue.asString())) {
+                if (!PAINT_ONLY.contains(property)) {
+                    return RELAYOUT;
+                }
+                result = REPAINT;
+            }
+        }
+        return result;
+    }
+
+    private static List<CSSName> primitiveProperties() {
+        List<CSSName> result = new ArrayList<>(CSSName.countCSSPrimitiveNames());
+        for (Iterator<String> it = CSSName.allCSS2PrimitivePropertyNames(); it.hasNext(); ) {
+            CSSName property = CSSName.getByPropertyName(it.next());
+            if (property != null) {
+                result.add(property);
+            }
+        }
+        return unmodifiableList(result);
+    }
+}
@@ -28,15 +28,10 @@ import org.xhtmlrenderer.css.parser.PropertyValue;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.FSDerivedValue;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import static java.util.Objects.requireNonNullElseGet;
 import static org.w3c.dom.css.CSSValue.CSS_INHERIT;
 
 public class DerivedValueFactory {
-    private static final Map<String, FSDerivedValue> CACHED_COLORS = new HashMap<>();
-
     @CheckReturnValue
     public static FSDerivedValue newDerivedValue(
             @Nullable CalculatedStyle style, CSSName cssName, PropertyValue value) {
@@ -44,11 +39,13 @@ public class DerivedValueFactory {
             return style.getParent().valueByName(cssName);
         }
         return switch (value.getPropertyValueType()) {
-            case VALUE_TYPE_LENGTH -> new LengthValue(style, cssName, value);
+            case VALUE_TYPE_LENGTH -> DerivedValuePool.isContextFree(value) ?
+                    DerivedValuePool.getShared().get(cssName, value, DerivedValueFactory::newAbsoluteLength) :
+                    new LengthValue(style, cssName, value);
             case VALUE_TYPE_IDENT -> getIdentValue(value);
-            case VALUE_TYPE_STRING -> new StringValue(cssName, value);
-            case VALUE_TYPE_NUMBER -> new NumberValue(cssName, value);
-            case VALUE_TYPE_COLOR -> getColor(cssName, value, value.getCssText());
+            case VALUE_TYPE_STRING -> DerivedValuePool.getShared().get(cssName, value, StringValue::new);
+            case VALUE_TYPE_NUMBER -> DerivedValuePool.getShared().get(cssName, value, NumberValue::new);
+            case VALUE_TYPE_COLOR -> DerivedValuePool.getShared().get(cssName, value, ColorValue::new);
             case VALUE_TYPE_LIST -> new ListValue(cssName, value);
             case VALUE_TYPE_FUNCTION -> new FunctionValue(cssName, value);
         };
@@ -62,13 +59,11 @@ public class DerivedValueFactory {
         );
     }
 
+    /**
+     * An absolute length does not need its style, so it is created without one to be shared
+     */
     @CheckReturnValue
-    private static FSDerivedValue getColor(CSSName cssName, PropertyValue value, String cssText) {
-        FSDerivedValue color = CACHED_COLORS.get(cssText);
-        if (color == null) {
-            color = new ColorValue(cssName, value);
-            CACHED_COLORS.put(cssText, color);
-        }
-        return color;
+    private static FSDerivedValue newAbsoluteLength(CSSName cssName, PropertyValue value) {
+        return new LengthValue(null, cssName, value);
     }
 }
@@ -0,0 +1,129 @@
+package org.xhtmlrenderer.css.style.derived;
+
+import org.jspecify.annotations.Nullable;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+import org.xhtmlrenderer.css.style.FSDerivedValue;
+import org.xhtmlrenderer.util.Configuration;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import static org.w3c.dom.css.CSSPrimitiveValue.CSS_CM;
+import static org.w3c.dom.css.CSSPrimitiveValue.CSS_IN;
+import static org.w3c.dom.css.CSSPrimitiveValue.CSS_MM;
+import static org.w3c.dom.css.CSSPrimitiveValue.CSS_NUMBER;
+import static org.w3c.dom.css.CSSPrimitiveValue.CSS_PC;
+import static org.w3c.dom.css.CSSPrimitiveValue.CSS_PT;
+import static org.w3c.dom.css.CSSPrimitiveValue.CSS_PX;
+
+/**
+ * Shares derived values that do not depend on the style they were derived for:
+ * colors, numbers, strings and lengths in absolute units. The pool is used by all
+ * threads and bounded in size; when it is full, a quarter of the values is dropped
+ * in no particular order.
+ * <p>
+ * The shared value is also remembered by the {@link PropertyValue} it was derived
+ * from, so the pool is only asked once per parsed value.
+ */
+public final class DerivedValuePool {
+    private static final DerivedValuePool shared =
+            new DerivedValuePool(Configuration.valueAsInt("xr.css.derived-value-pool.size", 4096));
+
+    private final int capacity;
+    private final Map<Key, FSDerivedValue> values = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    DerivedValuePool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the pool used by {@link DerivedValueFactory}
+     */
+    public static DerivedValuePool getShared() {
+        return shared;
+    }
+
+    /**
+     * Whether a length can be shared, that is, converts to dots without looking
+     * at the style, like {@code 2px} or {@code 1cm} but unlike {@code 1em} or {@code 50%}
+     */
+    static boolean isContextFree(PropertyValue length) {
+        return switch (length.getPrimitiveType()) {
+            case CSS_PX, CSS_IN, CSS_CM, CSS_MM, CSS_PT, CSS_PC, CSS_NUMBER -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @param factory creates the value when it is not in the pool; it must not
+     *                keep anything specific to the current style
+     */
+    FSDerivedValue get(CSSName cssName, PropertyValue value,
+                       BiFunction<CSSName, PropertyValue, FSDerivedValue> factory) {
+        if (capacity <= 0) {
+            return factory.apply(cssName, value);
+        }
+        // equal values mostly share one PropertyValue, so look them up once
+        FSDerivedValue remembered = value.getSharedDerivedValue();
+        if (remembered != null) {
+            return remembered;
+        }
+
+        Key key = new Key(value.getPropertyValueType(), value.getPrimitiveType(), value.getCssText(),
+                value.getStringValue(), List.of(value.getStringArrayValue()));
+        FSDerivedValue pooled = values.get(key);
+        if (pooled != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            if (values.size() >= capacity) {
+                evict();
+            }
+            FSDerivedValue created = factory.apply(cssName, value);
+            FSDerivedValue previous = values.putIfAbsent(key, created);
+            pooled = previous == null ? created : previous;
+        }
+        value.setSharedDerivedValue(pooled);
+        return pooled;
+    }
+
+    private void evict() {
+        int target = capacity - capacity / 4;
+        for (Iterator<Key> it = values.keySet().iterator(); it.hasNext() && values.size() > target; ) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(hits.sum(), misses.sum(), evictions.sum(), values.size());
+    }
+
+    public void clear() {
+        values.clear();
+    }
+
+    /**
+     * A snapshot of the counters of the pool
+     *
+     * @param hits      how many derived values were found in the pool
+     * @param misses    how many derived values had to be created
+     * @param evictions how many derived values were dropped to stay within the size limit
+     * @param size      how many derived values are in the pool
+     */
+    public record Statistics(long hits, long misses, long evictions, int size) {
+    }
+
+    private record Key(PropertyValue.Type valueType, short primitiveType, String cssText,
+                       @Nullable String stringValue, List<String> strings) {
+    }
+}
@@ -0,0 +1,124 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * An attribute of a {@link CompactElement}, created each time it is asked for. Two
+ * instances for the same attribute are {@linkplain #isSameNode the same node}.
+ */
+final class CompactAttr extends CompactNode implements Attr {
+    private final CompactElement owner;
+    final int position;
+
+    CompactAttr(CompactElement owner, int position) {
+        this.owner = owner;
+        this.position = position;
+    }
+
+    private Name name() {
+        return owner.attributeName(position);
+    }
+
+    @Override
+    public String getNodeName() {
+        return name().qualifiedName();
+    }
+
+    @Override
+    public short getNodeType() {
+        return ATTRIBUTE_NODE;
+    }
+
+    @Override
+    public String getName() {
+        return name().qualifiedName();
+    }
+
+    @Override
+    @Nullable
+    public String getNamespaceURI() {
+        return name().namespaceURI();
+    }
+
+    @Override
+    @Nullable
+    public String getPrefix() {
+        return name().prefix();
+    }
+
+    @Override
+    public String getLocalName() {
+        return name().localName();
+    }
+
+    @Override
+    public String getValue() {
+        return owner.attributeValue(position);
+    }
+
+    @Override
+    public String getNodeValue() {
+        return getValue();
+    }
+
+    @Override
+    public void setValue(String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean getSpecified() {
+        return true;
+    }
+
+    @Override
+    public CompactElement getOwnerElement() {
+        return owner;
+    }
+
+    @Override
+    public CompactDocument getOwnerDocument() {
+        return owner.getOwnerDocument();
+    }
+
+    @Override
+    @Nullable
+    public Node getParentNode() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public Node getPreviousSibling() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public Node getNextSibling() {
+        return null;
+    }
+
+    @Override
+    CompactElement namespaceContext() {
+        return owner;
+    }
+
+    @Override
+    public TypeInfo getSchemaTypeInfo() {
+        return CompactElement.NO_TYPE;
+    }
+
+    @Override
+    public boolean isId() {
+        return name().namespaceURI() == null && name().localName().equals("id");
+    }
+
+    @Override
+    public boolean isSameNode(Node other) {
+        return other instanceof CompactAttr attr && attr.owner == owner && attr.position == position;
+    }
+}
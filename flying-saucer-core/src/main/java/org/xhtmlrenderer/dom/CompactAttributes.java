@@ -0,0 +1,59 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The attributes of a {@link CompactElement}, in the order of the document.
+ */
+final class CompactAttributes implements NamedNodeMap {
+    private final CompactElement element;
+
+    CompactAttributes(CompactElement element) {
+        this.element = element;
+    }
+
+    @Override
+    @Nullable
+    public Node getNamedItem(String name) {
+        return element.getAttributeNode(name);
+    }
+
+    @Override
+    @Nullable
+    public Node getNamedItemNS(@Nullable String namespaceURI, String localName) {
+        return element.getAttributeNodeNS(namespaceURI, localName);
+    }
+
+    @Override
+    @Nullable
+    public Node item(int index) {
+        return index >= 0 && index < element.attributeCount() ? new CompactAttr(element, index) : null;
+    }
+
+    @Override
+    public int getLength() {
+        return element.attributeCount();
+    }
+
+    @Override
+    public Node setNamedItem(Node arg) {
+        throw CompactNode.readOnly();
+    }
+
+    @Override
+    public Node removeNamedItem(String name) {
+        throw CompactNode.readOnly();
+    }
+
+    @Override
+    public Node setNamedItemNS(Node arg) {
+        throw CompactNode.readOnly();
+    }
+
+    @Override
+    public Node removeNamedItemNS(@Nullable String namespaceURI, String localName) {
+        throw CompactNode.readOnly();
+    }
+}
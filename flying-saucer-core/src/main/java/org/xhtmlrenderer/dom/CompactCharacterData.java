@@ -0,0 +1,69 @@
+package org.xhtmlrenderer.dom;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * The text, comments and processing instructions of a {@link CompactDocument}.
+ */
+abstract class CompactCharacterData extends CompactNode implements CharacterData {
+    private final String data;
+
+    CompactCharacterData(String data) {
+        this.data = data;
+    }
+
+    @Override
+    public String getData() {
+        return data;
+    }
+
+    @Override
+    public String getNodeValue() {
+        return data;
+    }
+
+    @Override
+    public String getTextContent() {
+        return data;
+    }
+
+    @Override
+    public int getLength() {
+        return data.length();
+    }
+
+    @Override
+    public String substringData(int offset, int count) {
+        if (offset < 0 || offset > data.length() || count < 0) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR, "Offset " + offset + " and count " + count
+                    + " out of range for data of length " + data.length());
+        }
+        return data.substring(offset, Math.min(data.length(), offset + count));
+    }
+
+    @Override
+    public void setData(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public void appendData(String arg) {
+        throw readOnly();
+    }
+
+    @Override
+    public void insertData(int offset, String arg) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteData(int offset, int count) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceData(int offset, int count, String arg) {
+        throw readOnly();
+    }
+}
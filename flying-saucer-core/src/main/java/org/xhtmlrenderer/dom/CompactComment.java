@@ -0,0 +1,19 @@
+package org.xhtmlrenderer.dom;
+
+import org.w3c.dom.Comment;
+
+final class CompactComment extends CompactCharacterData implements Comment {
+    CompactComment(String data) {
+        super(data);
+    }
+
+    @Override
+    public String getNodeName() {
+        return "#comment";
+    }
+
+    @Override
+    public short getNodeType() {
+        return COMMENT_NODE;
+    }
+}
@@ -0,0 +1,259 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+/**
+ * Builds a {@link CompactDocument} from the events of a SAX parser. The tree is the
+ * same as {@link org.xhtmlrenderer.resource.XMLResource} builds with the JDK's DOM:
+ * namespace declarations become {@code xmlns} attributes, adjacent character data is
+ * merged into one text node, and comments and processing instructions outside the DTD
+ * are kept.
+ * <p>
+ * Set the builder as both the content handler and the
+ * {@code http://xml.org/sax/properties/lexical-handler} of the parser, and take the
+ * document once parsed. Not thread-safe; use one builder per document.
+ */
+public final class CompactDOMBuilder extends DefaultHandler implements LexicalHandler {
+    private final StringBuilder text = new StringBuilder();
+    private final List<String> namespaceDeclarations = new ArrayList<>(4);
+    private final Map<String, Name> names = new HashMap<>();
+    private final Map<Name, Name> otherNames = new HashMap<>();
+    private final Map<String, String> sharedValues = new HashMap<>();
+    /** the children of the open elements, the document's first */
+    private final List<List<CompactNode>> levels = new ArrayList<>();
+    private final List<CompactParent> parents = new ArrayList<>();
+    @Nullable
+    private CompactDocument document;
+    private int depth;
+    private boolean inDTD;
+
+    /**
+     * Hands over the document built.
+     *
+     * @throws SAXException if the parser did not report a whole document
+     */
+    public CompactDocument takeDocument() throws SAXException {
+        CompactDocument result = document;
+        if (result == null || depth != 0) {
+            throw new SAXException("The parser did not report a whole document");
+        }
+        document = null;
+        sharedValues.clear();
+        parents.clear();
+        levels.clear();
+        return result;
+    }
+
+    @Override
+    public void startDocument() {
+        document = new CompactDocument();
+        text.setLength(0);
+        namespaceDeclarations.clear();
+        depth = 0;
+        inDTD = false;
+        open(document);
+    }
+
+    @Override
+    public void endDocument() {
+        close();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+        namespaceDeclarations.add(prefix.isEmpty() ? XMLNS_ATTRIBUTE : XMLNS_ATTRIBUTE + ':' + prefix);
+        namespaceDeclarations.add(uri);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        flushText();
+        CompactDocument owner = document();
+
+        int length = attributes.getLength();
+        Object[] values = namespaceDeclarations.isEmpty() && length == 0
+                ? CompactElement.NO_ATTRIBUTES
+                : new Object[namespaceDeclarations.size() + length * 2];
+        int count = 0;
+        for (int i = 0; i < namespaceDeclarations.size(); i += 2) {
+            values[count++] = name(XMLNS_ATTRIBUTE_NS_URI, namespaceDeclarations.get(i));
+            values[count++] = share(namespaceDeclarations.get(i + 1));
+        }
+        namespaceDeclarations.clear();
+        for (int i = 0; i < length; i++) {
+            String name = attributes.getQName(i);
+            if (name.isEmpty()) {
+                name = attributes.getLocalName(i);
+            }
+            if (name.equals(XMLNS_ATTRIBUTE) || name.startsWith(XMLNS_ATTRIBUTE + ':')) {
+                // reported with the namespace-prefixes feature, and already added above
+                if (!contains(values, count, name)) {
+                    values[count++] = name(XMLNS_ATTRIBUTE_NS_URI, name);
+                    values[count++] = share(attributes.getValue(i));
+                }
+            } else {
+                values[count++] = name(attributes.getURI(i), name);
+                values[count++] = share(attributes.getValue(i));
+            }
+        }
+        if (count != values.length) {
+            values = Arrays.copyOf(values, count);
+        }
+
+        CompactElement element = new CompactElement(owner, name(uri, qName.isEmpty() ? localName : qName),
+                values, owner.elementCount++);
+        append(element);
+        open(element);
+    }
+
+    private static boolean contains(Object[] values, int count, String qualifiedName) {
+        for (int i = 0; i < count; i += 2) {
+            if (((Name) values[i]).qualifiedName().equals(qualifiedName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the one instance of the name in this document
+     */
+    private Name name(@Nullable String namespaceURI, String qualifiedName) {
+        String uri = namespaceURI == null || namespaceURI.isEmpty() ? null : namespaceURI;
+        Name name = names.get(qualifiedName);
+        if (name == null) {
+            name = Name.of(uri, qualifiedName);
+            names.put(qualifiedName, name);
+        } else if (!Name.equal(uri, name.namespaceURI())) {
+            // the same name in another namespace, which is rare
+            name = otherNames.computeIfAbsent(Name.of(uri, qualifiedName), n -> n);
+        }
+        return name;
+    }
+
+    /**
+     * @return the one instance of an attribute value or whitespace in this document, as they repeat a lot
+     */
+    private String share(String value) {
+        String shared = sharedValues.putIfAbsent(value, value);
+        return shared == null ? value : shared;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        flushText();
+        close();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        text.append(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        // dropped, as by the JDK's DOM builder; XMLResource reports it as characters if configured
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        if (!inDTD) {
+            flushText();
+            append(new CompactProcessingInstruction(target, data));
+        }
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) {
+        if (!inDTD) {
+            flushText();
+            append(new CompactComment(new String(ch, start, length)));
+        }
+    }
+
+    @Override
+    public void startDTD(String name, @Nullable String publicId, @Nullable String systemId) {
+        inDTD = true;
+    }
+
+    @Override
+    public void endDTD() {
+        inDTD = false;
+    }
+
+    @Override
+    public void startEntity(String name) {
+    }
+
+    @Override
+    public void endEntity(String name) {
+    }
+
+    @Override
+    public void startCDATA() {
+    }
+
+    @Override
+    public void endCDATA() {
+    }
+
+    private void open(CompactParent parent) {
+        if (depth == levels.size()) {
+            levels.add(new ArrayList<>());
+            parents.add(parent);
+        } else {
+            parents.set(depth, parent);
+        }
+        depth++;
+    }
+
+    /**
+     * Gives the innermost open element or the document its children, which are
+     * collected in a list that is reused for its next sibling.
+     */
+    private void close() {
+        flushText();
+        depth--;
+        List<CompactNode> children = levels.get(depth);
+        CompactParent parent = parents.get(depth);
+        if (!children.isEmpty()) {
+            parent.children = children.toArray(CompactParent.NO_CHILDREN);
+            children.clear();
+        }
+    }
+
+    private void append(CompactNode node) {
+        List<CompactNode> children = levels.get(depth - 1);
+        node.parent = parents.get(depth - 1);
+        node.index = children.size();
+        children.add(node);
+    }
+
+    private void flushText() {
+        if (!text.isEmpty()) {
+            String data = text.toString();
+            append(new CompactText(data.isBlank() ? share(data) : data));
+            text.setLength(0);
+        }
+    }
+
+    private CompactDocument document() {
+        if (document == null) {
+            throw new IllegalStateException("Document not started");
+        }
+        return document;
+    }
+}
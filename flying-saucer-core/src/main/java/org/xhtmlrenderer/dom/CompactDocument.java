@@ -0,0 +1,273 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+import org.xhtmlrenderer.util.XRRuntimeException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only document that takes a fraction of the memory of the JDK's DOM, built by
+ * {@link CompactDOMBuilder}. Names are shared between all elements and attributes with
+ * that name, as are equal attribute values and whitespace between elements. Attributes
+ * are kept in an array per element, and every node knows its
+ * index among its siblings. Elements are numbered in document order, so that data
+ * about them, such as their style, can be kept in arrays rather than in maps.
+ * <p>
+ * Any attempt to modify the document throws a {@link org.w3c.dom.DOMException}.
+ * Attribute nodes are created when asked for; use {@link Node#isSameNode} rather than
+ * {@code ==} to compare them. The document type is not kept, and
+ * {@link #getElementById} finds elements by their {@code id} attribute.
+ */
+public final class CompactDocument extends CompactParent implements Document {
+    int elementCount;
+    @Nullable
+    private volatile Map<String, CompactElement> ids;
+
+    CompactDocument() {
+    }
+
+    /**
+     * @return the number of elements of the document
+     */
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    @Override
+    CompactDocument document() {
+        return this;
+    }
+
+    @Override
+    @Nullable
+    public CompactDocument getOwnerDocument() {
+        return null;
+    }
+
+    @Override
+    public String getNodeName() {
+        return "#document";
+    }
+
+    @Override
+    public short getNodeType() {
+        return DOCUMENT_NODE;
+    }
+
+    @Override
+    @Nullable
+    public String getTextContent() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    CompactElement namespaceContext() {
+        return getDocumentElement();
+    }
+
+    @Override
+    @Nullable
+    public DocumentType getDoctype() {
+        return null;
+    }
+
+    @Override
+    public DOMImplementation getImplementation() {
+        return Implementation.INSTANCE;
+    }
+
+    @Override
+    @Nullable
+    public CompactElement getDocumentElement() {
+        for (CompactNode child : children) {
+            if (child instanceof CompactElement element) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public Element getElementById(String elementId) {
+        Map<String, CompactElement> result = ids;
+        if (result == null) {
+            result = new HashMap<>();
+            CompactElement root = getDocumentElement();
+            if (root != null) {
+                collectIds(root, result);
+            }
+            ids = result;
+        }
+        return result.get(elementId);
+    }
+
+    private static void collectIds(CompactElement element, Map<String, CompactElement> ids) {
+        int position = element.indexOf(null, "id");
+        if (position >= 0) {
+            ids.putIfAbsent(element.attributeValue(position), element);
+        }
+        for (CompactNode child : element.children) {
+            if (child instanceof CompactElement childElement) {
+                collectIds(childElement, ids);
+            }
+        }
+    }
+
+    @Override
+    public Element createElement(String tagName) {
+        throw readOnly();
+    }
+
+    @Override
+    public DocumentFragment createDocumentFragment() {
+        throw readOnly();
+    }
+
+    @Override
+    public Text createTextNode(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public Comment createComment(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public CDATASection createCDATASection(String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public ProcessingInstruction createProcessingInstruction(String target, String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr createAttribute(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public EntityReference createEntityReference(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node importNode(Node importedNode, boolean deep) {
+        throw readOnly();
+    }
+
+    @Override
+    public Element createElementNS(@Nullable String namespaceURI, String qualifiedName) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr createAttributeNS(@Nullable String namespaceURI, String qualifiedName) {
+        throw readOnly();
+    }
+
+    @Override
+    @Nullable
+    public String getInputEncoding() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public String getXmlEncoding() {
+        return null;
+    }
+
+    @Override
+    public boolean getXmlStandalone() {
+        return false;
+    }
+
+    @Override
+    public void setXmlStandalone(boolean xmlStandalone) {
+        throw readOnly();
+    }
+
+    @Override
+    public String getXmlVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public void setXmlVersion(String xmlVersion) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean getStrictErrorChecking() {
+        return true;
+    }
+
+    @Override
+    public void setStrictErrorChecking(boolean strictErrorChecking) {
+        throw readOnly();
+    }
+
+    @Override
+    @Nullable
+    public String getDocumentURI() {
+        return null;
+    }
+
+    @Override
+    public void setDocumentURI(String documentURI) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node adoptNode(Node source) {
+        throw readOnly();
+    }
+
+    @Override
+    public DOMConfiguration getDomConfig() {
+        throw notSupported();
+    }
+
+    @Override
+    public void normalizeDocument() {
+        // adjacent text is always merged into one node
+    }
+
+    @Override
+    public Node renameNode(Node n, @Nullable String namespaceURI, String qualifiedName) {
+        throw readOnly();
+    }
+
+    private static final class Implementation {
+        private static final DOMImplementation INSTANCE = implementation();
+
+        private static DOMImplementation implementation() {
+            try {
+                return DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
+            } catch (ParserConfigurationException e) {
+                throw new XRRuntimeException("Failed on configuring DOM document builder.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.TypeInfo;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+/**
+ * An element of a {@link CompactDocument}. Its attributes are kept as pairs of name
+ * and value in one array, and are only wrapped in {@link Attr} nodes when asked for.
+ */
+public final class CompactElement extends CompactParent implements Element {
+    static final Object[] NO_ATTRIBUTES = new Object[0];
+    static final TypeInfo NO_TYPE = new TypeInfo() {
+        @Override
+        @Nullable
+        public String getTypeName() {
+            return null;
+        }
+
+        @Override
+        @Nullable
+        public String getTypeNamespace() {
+            return null;
+        }
+
+        @Override
+        public boolean isDerivedFrom(String typeNamespaceArg, String typeNameArg, int derivationMethod) {
+            return false;
+        }
+    };
+
+    private final CompactDocument document;
+    final Name name;
+    private final Object[] attributes;
+    private final int elementIndex;
+
+    CompactElement(CompactDocument document, Name name, Object[] attributes, int elementIndex) {
+        this.document = document;
+        this.name = name;
+        this.attributes = attributes;
+        this.elementIndex = elementIndex;
+    }
+
+    /**
+     * @return the position of the element in the document order of all elements of its document,
+     *         from 0 to {@link CompactDocument#getElementCount()} - 1
+     */
+    public int getElementIndex() {
+        return elementIndex;
+    }
+
+    @Override
+    CompactDocument document() {
+        return document;
+    }
+
+    @Override
+    public CompactDocument getOwnerDocument() {
+        return document;
+    }
+
+    @Override
+    public String getNodeName() {
+        return name.qualifiedName();
+    }
+
+    @Override
+    public short getNodeType() {
+        return ELEMENT_NODE;
+    }
+
+    @Override
+    public String getTagName() {
+        return name.qualifiedName();
+    }
+
+    @Override
+    @Nullable
+    public String getNamespaceURI() {
+        return name.namespaceURI();
+    }
+
+    @Override
+    @Nullable
+    public String getPrefix() {
+        return name.prefix();
+    }
+
+    @Override
+    public String getLocalName() {
+        return name.localName();
+    }
+
+    @Override
+    public String getTextContent() {
+        StringBuilder text = new StringBuilder();
+        appendText(text);
+        return text.toString();
+    }
+
+    @Override
+    public NamedNodeMap getAttributes() {
+        return new CompactAttributes(this);
+    }
+
+    @Override
+    public boolean hasAttributes() {
+        return attributes.length != 0;
+    }
+
+    int attributeCount() {
+        return attributes.length / 2;
+    }
+
+    Name attributeName(int position) {
+        return (Name) attributes[position * 2];
+    }
+
+    String attributeValue(int position) {
+        return (String) attributes[position * 2 + 1];
+    }
+
+    int indexOf(String qualifiedName) {
+        for (int i = 0; i < attributes.length; i += 2) {
+            if (((Name) attributes[i]).qualifiedName().equals(qualifiedName)) {
+                return i / 2;
+            }
+        }
+        return -1;
+    }
+
+    int indexOf(@Nullable String namespaceURI, String localName) {
+        for (int i = 0; i < attributes.length; i += 2) {
+            Name attributeName = (Name) attributes[i];
+            if (attributeName.localName().equals(localName) && Name.equal(namespaceURI, attributeName.namespaceURI())) {
+                return i / 2;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        int position = indexOf(name);
+        return position < 0 ? "" : attributeValue(position);
+    }
+
+    @Override
+    public String getAttributeNS(@Nullable String namespaceURI, String localName) {
+        int position = indexOf(namespaceURI, localName);
+        return position < 0 ? "" : attributeValue(position);
+    }
+
+    @Override
+    @Nullable
+    public Attr getAttributeNode(String name) {
+        int position = indexOf(name);
+        return position < 0 ? null : new CompactAttr(this, position);
+    }
+
+    @Override
+    @Nullable
+    public Attr getAttributeNodeNS(@Nullable String namespaceURI, String localName) {
+        int position = indexOf(namespaceURI, localName);
+        return position < 0 ? null : new CompactAttr(this, position);
+    }
+
+    @Override
+    public boolean hasAttribute(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    @Override
+    public boolean hasAttributeNS(@Nullable String namespaceURI, String localName) {
+        return indexOf(namespaceURI, localName) >= 0;
+    }
+
+    @Override
+    public void setAttribute(String name, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr setAttributeNode(Attr newAttr) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr removeAttributeNode(Attr oldAttr) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAttributeNS(@Nullable String namespaceURI, String qualifiedName, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAttributeNS(@Nullable String namespaceURI, String localName) {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr setAttributeNodeNS(Attr newAttr) {
+        throw readOnly();
+    }
+
+    @Override
+    public TypeInfo getSchemaTypeInfo() {
+        return NO_TYPE;
+    }
+
+    @Override
+    public void setIdAttribute(String name, boolean isId) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIdAttributeNS(@Nullable String namespaceURI, String localName, boolean isId) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIdAttributeNode(Attr idAttr, boolean isId) {
+        throw readOnly();
+    }
+
+    @Override
+    CompactElement namespaceContext() {
+        return this;
+    }
+
+    @Override
+    @Nullable
+    public String lookupNamespaceURI(@Nullable String prefix) {
+        for (CompactElement element = this; element != null; element = element.parent instanceof CompactElement e ? e : null) {
+            if (element.name.namespaceURI() != null && Name.equal(prefix, element.name.prefix())) {
+                return element.name.namespaceURI();
+            }
+            int position = prefix == null
+                    ? element.indexOf(XMLNS_ATTRIBUTE_NS_URI, XMLNS_ATTRIBUTE)
+                    : element.indexOf(XMLNS_ATTRIBUTE_NS_URI, prefix);
+            if (position >= 0) {
+                String namespaceURI = element.attributeValue(position);
+                return namespaceURI.isEmpty() ? null : namespaceURI;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public String lookupPrefix(@Nullable String namespaceURI) {
+        if (namespaceURI == null || namespaceURI.isEmpty()) {
+            return null;
+        }
+        for (CompactElement element = this; element != null; element = element.parent instanceof CompactElement e ? e : null) {
+            if (namespaceURI.equals(element.name.namespaceURI()) && element.name.prefix() != null) {
+                return element.name.prefix();
+            }
+            for (int i = 0; i < element.attributeCount(); i++) {
+                Name attributeName = element.attributeName(i);
+                if (XMLNS_ATTRIBUTE.equals(attributeName.prefix())
+                        && namespaceURI.equals(element.attributeValue(i))
+                        && namespaceURI.equals(lookupNamespaceURI(attributeName.localName()))) {
+                    return attributeName.localName();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,341 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The nodes of a {@link CompactDocument}. A node knows its parent and its index among
+ * its siblings, so that siblings are found in the children array of the parent. All
+ * methods that would modify the document throw a {@link DOMException} with the code
+ * {@link DOMException#NO_MODIFICATION_ALLOWED_ERR}.
+ */
+abstract class CompactNode implements Node {
+    static final NodeList EMPTY_LIST = new Nodes(List.of());
+
+    @Nullable
+    CompactParent parent;
+    int index;
+
+    static DOMException readOnly() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, "The document is read-only");
+    }
+
+    static DOMException notSupported() {
+        return new DOMException(DOMException.NOT_SUPPORTED_ERR, "Not supported by a compact document");
+    }
+
+    @Override
+    @Nullable
+    public String getNodeValue() {
+        return null;
+    }
+
+    @Override
+    public void setNodeValue(String nodeValue) {
+        throw readOnly();
+    }
+
+    @Override
+    @Nullable
+    public Node getParentNode() {
+        return parent;
+    }
+
+    @Override
+    public NodeList getChildNodes() {
+        return EMPTY_LIST;
+    }
+
+    @Override
+    @Nullable
+    public Node getFirstChild() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public Node getLastChild() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public Node getPreviousSibling() {
+        return parent == null || index == 0 ? null : parent.children[index - 1];
+    }
+
+    @Override
+    @Nullable
+    public Node getNextSibling() {
+        return parent == null || index + 1 == parent.children.length ? null : parent.children[index + 1];
+    }
+
+    @Override
+    @Nullable
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public CompactDocument getOwnerDocument() {
+        return parent == null ? null : parent.document();
+    }
+
+    @Override
+    public Node insertBefore(Node newChild, @Nullable Node refChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node replaceChild(Node newChild, Node oldChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node removeChild(Node oldChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node appendChild(Node newChild) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean hasChildNodes() {
+        return false;
+    }
+
+    @Override
+    public Node cloneNode(boolean deep) {
+        throw notSupported();
+    }
+
+    @Override
+    public void normalize() {
+        // adjacent text is always merged into one node
+    }
+
+    @Override
+    public boolean isSupported(String feature, String version) {
+        return false;
+    }
+
+    @Override
+    @Nullable
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public String getPrefix() {
+        return null;
+    }
+
+    @Override
+    public void setPrefix(String prefix) {
+        throw readOnly();
+    }
+
+    @Override
+    @Nullable
+    public String getLocalName() {
+        return null;
+    }
+
+    @Override
+    public boolean hasAttributes() {
+        return false;
+    }
+
+    @Override
+    @Nullable
+    public String getBaseURI() {
+        return null;
+    }
+
+    @Override
+    public short compareDocumentPosition(Node other) {
+        if (isSameNode(other)) {
+            return 0;
+        }
+        List<Node> path = path(this);
+        List<Node> otherPath = path(other);
+        if (path.get(0) != otherPath.get(0)) {
+            return (short) (DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+                    | (System.identityHashCode(path.get(0)) < System.identityHashCode(otherPath.get(0))
+                    ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING));
+        }
+        int common = 0;
+        while (common < path.size() && common < otherPath.size() && path.get(common).isSameNode(otherPath.get(common))) {
+            common++;
+        }
+        if (common == path.size()) {
+            return (short) (DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING);
+        }
+        if (common == otherPath.size()) {
+            return (short) (DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING);
+        }
+        return position(path.get(common)) < position(otherPath.get(common))
+                ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING;
+    }
+
+    /**
+     * @return the node and its ancestors, the root first; attributes come after their element
+     */
+    private static List<Node> path(Node node) {
+        List<Node> result = new ArrayList<>();
+        for (Node n = node; n != null; n = n instanceof CompactAttr attr ? attr.getOwnerElement() : n.getParentNode()) {
+            result.add(0, n);
+        }
+        return result;
+    }
+
+    private static int position(Node node) {
+        // attributes precede the children of their element
+        return node instanceof CompactAttr attr ? attr.position - Integer.MAX_VALUE : ((CompactNode) node).index;
+    }
+
+    @Override
+    @Nullable
+    public String getTextContent() {
+        return getNodeValue();
+    }
+
+    @Override
+    public void setTextContent(String textContent) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isSameNode(Node other) {
+        return this == other;
+    }
+
+    @Override
+    @Nullable
+    public String lookupPrefix(@Nullable String namespaceURI) {
+        CompactElement element = namespaceContext();
+        return element == null ? null : element.lookupPrefix(namespaceURI);
+    }
+
+    @Override
+    public boolean isDefaultNamespace(@Nullable String namespaceURI) {
+        return Name.equal(namespaceURI, lookupNamespaceURI(null));
+    }
+
+    @Override
+    @Nullable
+    public String lookupNamespaceURI(@Nullable String prefix) {
+        CompactElement element = namespaceContext();
+        return element == null ? null : element.lookupNamespaceURI(prefix);
+    }
+
+    /**
+     * @return the element whose namespace declarations are in scope for this node
+     */
+    @Nullable
+    CompactElement namespaceContext() {
+        return parent instanceof CompactElement element ? element : null;
+    }
+
+    @Override
+    public boolean isEqualNode(@Nullable Node other) {
+        return equal(this, other);
+    }
+
+    private static boolean equal(Node node, @Nullable Node other) {
+        if (other == null
+                || node.getNodeType() != other.getNodeType()
+                || !Objects.equals(node.getNodeName(), other.getNodeName())
+                || !Objects.equals(node.getLocalName(), other.getLocalName())
+                || !Objects.equals(node.getNamespaceURI(), other.getNamespaceURI())
+                || !Objects.equals(node.getPrefix(), other.getPrefix())
+                || !Objects.equals(node.getNodeValue(), other.getNodeValue())
+                || !equalAttributes(node.getAttributes(), other.getAttributes())) {
+            return false;
+        }
+        NodeList children = node.getChildNodes();
+        NodeList otherChildren = other.getChildNodes();
+        if (children.getLength() != otherChildren.getLength()) {
+            return false;
+        }
+        for (int i = 0; i < children.getLength(); i++) {
+            if (!equal(children.item(i), otherChildren.item(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalAttributes(@Nullable NamedNodeMap attributes, @Nullable NamedNodeMap other) {
+        if (attributes == null || other == null) {
+            return attributes == other;
+        }
+        if (attributes.getLength() != other.getLength()) {
+            return false;
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            Node otherAttribute = attribute.getLocalName() == null
+                    ? other.getNamedItem(attribute.getNodeName())
+                    : other.getNamedItemNS(attribute.getNamespaceURI(), attribute.getLocalName());
+            // not compared with equal(), as other implementations give attributes text children
+            if (otherAttribute == null
+                    || !Objects.equals(attribute.getNodeName(), otherAttribute.getNodeName())
+                    || !Objects.equals(attribute.getNodeValue(), otherAttribute.getNodeValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @Nullable
+    public Object getFeature(String feature, String version) {
+        return null;
+    }
+
+    @Override
+    public Object setUserData(String key, Object data, UserDataHandler handler) {
+        throw readOnly();
+    }
+
+    @Override
+    @Nullable
+    public Object getUserData(String key) {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + getNodeName() + ": " + getNodeValue() + "]";
+    }
+
+    /**
+     * A snapshot of nodes, such as the elements with a tag name, which stays up to date
+     * since the document never changes.
+     */
+    record Nodes(List<? extends Node> nodes) implements NodeList {
+        @Override
+        @Nullable
+        public Node item(int index) {
+            return index >= 0 && index < nodes.size() ? nodes.get(index) : null;
+        }
+
+        @Override
+        public int getLength() {
+            return nodes.size();
+        }
+    }
+}
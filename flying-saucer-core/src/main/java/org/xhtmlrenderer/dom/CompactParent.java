@@ -0,0 +1,88 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A document or element, which is also the list of its own children.
+ */
+abstract class CompactParent extends CompactNode implements NodeList {
+    static final CompactNode[] NO_CHILDREN = new CompactNode[0];
+
+    CompactNode[] children = NO_CHILDREN;
+
+    abstract CompactDocument document();
+
+    @Override
+    public NodeList getChildNodes() {
+        return this;
+    }
+
+    @Override
+    @Nullable
+    public Node item(int index) {
+        return index >= 0 && index < children.length ? children[index] : null;
+    }
+
+    @Override
+    public int getLength() {
+        return children.length;
+    }
+
+    @Override
+    @Nullable
+    public Node getFirstChild() {
+        return children.length == 0 ? null : children[0];
+    }
+
+    @Override
+    @Nullable
+    public Node getLastChild() {
+        return children.length == 0 ? null : children[children.length - 1];
+    }
+
+    @Override
+    public boolean hasChildNodes() {
+        return children.length != 0;
+    }
+
+    public NodeList getElementsByTagName(String name) {
+        return elements(element -> element.name.matches(name));
+    }
+
+    public NodeList getElementsByTagNameNS(@Nullable String namespaceURI, String localName) {
+        return elements(element -> element.name.matches(namespaceURI, localName));
+    }
+
+    private NodeList elements(Predicate<CompactElement> filter) {
+        List<CompactElement> result = new ArrayList<>();
+        collect(filter, result);
+        return new Nodes(result);
+    }
+
+    void collect(Predicate<CompactElement> filter, List<CompactElement> result) {
+        for (CompactNode child : children) {
+            if (child instanceof CompactElement element) {
+                if (filter.test(element)) {
+                    result.add(element);
+                }
+                element.collect(filter, result);
+            }
+        }
+    }
+
+    void appendText(StringBuilder text) {
+        for (CompactNode child : children) {
+            if (child instanceof CompactText) {
+                text.append(child.getNodeValue());
+            } else if (child instanceof CompactElement element) {
+                element.appendText(text);
+            }
+        }
+    }
+}
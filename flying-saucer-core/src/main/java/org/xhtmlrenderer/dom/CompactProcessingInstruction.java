@@ -0,0 +1,43 @@
+package org.xhtmlrenderer.dom;
+
+import org.w3c.dom.ProcessingInstruction;
+
+final class CompactProcessingInstruction extends CompactNode implements ProcessingInstruction {
+    private final String target;
+    private final String data;
+
+    CompactProcessingInstruction(String target, String data) {
+        this.target = target;
+        this.data = data;
+    }
+
+    @Override
+    public String getNodeName() {
+        return target;
+    }
+
+    @Override
+    public short getNodeType() {
+        return PROCESSING_INSTRUCTION_NODE;
+    }
+
+    @Override
+    public String getNodeValue() {
+        return data;
+    }
+
+    @Override
+    public String getTarget() {
+        return target;
+    }
+
+    @Override
+    public String getData() {
+        return data;
+    }
+
+    @Override
+    public void setData(String data) {
+        throw readOnly();
+    }
+}
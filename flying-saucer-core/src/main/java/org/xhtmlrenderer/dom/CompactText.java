@@ -0,0 +1,42 @@
+package org.xhtmlrenderer.dom;
+
+import org.w3c.dom.Text;
+
+/**
+ * All character data between two other nodes, CDATA sections included.
+ */
+final class CompactText extends CompactCharacterData implements Text {
+    CompactText(String data) {
+        super(data);
+    }
+
+    @Override
+    public String getNodeName() {
+        return "#text";
+    }
+
+    @Override
+    public short getNodeType() {
+        return TEXT_NODE;
+    }
+
+    @Override
+    public Text splitText(int offset) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isElementContentWhitespace() {
+        return false;
+    }
+
+    @Override
+    public String getWholeText() {
+        return getData();
+    }
+
+    @Override
+    public Text replaceWholeText(String content) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,29 @@
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The name of an element or attribute, shared by all elements and attributes of a
+ * document with that name.
+ */
+record Name(@Nullable String namespaceURI, String qualifiedName, String localName, @Nullable String prefix) {
+    static Name of(@Nullable String namespaceURI, String qualifiedName) {
+        int colon = qualifiedName.indexOf(':');
+        return colon < 0
+                ? new Name(namespaceURI, qualifiedName, qualifiedName, null)
+                : new Name(namespaceURI, qualifiedName, qualifiedName.substring(colon + 1), qualifiedName.substring(0, colon));
+    }
+
+    boolean matches(String name) {
+        return name.equals("*") || name.equals(qualifiedName);
+    }
+
+    boolean matches(@Nullable String namespaceURI, String localName) {
+        return (localName.equals("*") || localName.equals(this.localName))
+                && ("*".equals(namespaceURI) || equal(namespaceURI, this.namespaceURI));
+    }
+
+    static boolean equal(@Nullable String namespaceURI, @Nullable String other) {
+        return namespaceURI == null || namespaceURI.isEmpty() ? other == null : namespaceURI.equals(other);
+    }
+}
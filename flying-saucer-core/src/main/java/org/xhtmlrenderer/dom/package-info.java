@@ -0,0 +1,8 @@
+/**
+ * A compact, read-only implementation of the DOM, for documents that are only
+ * loaded to be rendered. See {@link org.xhtmlrenderer.dom.CompactDocument}.
+ */
+@NullMarked
+package org.xhtmlrenderer.dom;
+
+import org.jspecify.annotations.NullMarked;
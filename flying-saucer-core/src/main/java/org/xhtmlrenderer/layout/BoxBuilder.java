@@ -100,6 +100,7 @@ public class BoxBuilder {
     public static BlockBox createRootBox(LayoutContext c, Document document) {
         Element root = document.getDocumentElement();
 
+        c.getSharedContext().cascadeInParallel(document);
         CalculatedStyle style = c.getSharedContext().getStyle(root);
 
         BlockBox result = style.isTable() || style.isInlineTable() ?
@@ -156,7 +157,7 @@ public class BoxBuilder {
         Element source = c.getRootLayer().getMaster().getElement(); // HACK
 
         ChildBoxInfo info = new ChildBoxInfo();
-        CalculatedStyle pageStyle = new EmptyStyle().deriveStyle(pageInfo.getPageStyle());
+        CalculatedStyle pageStyle = pageInfo.getCalculatedPageStyle();
 
         CalculatedStyle tableStyle = pageStyle.deriveStyle(
                 CascadedStyle.createLayoutStyle(
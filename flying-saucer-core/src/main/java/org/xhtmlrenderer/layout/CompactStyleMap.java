@@ -0,0 +1,83 @@
+package org.xhtmlrenderer.layout;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.dom.CompactDocument;
+import org.xhtmlrenderer.dom.CompactElement;
+
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The styles of the elements of a {@link CompactDocument}, kept in an array slot per
+ * element rather than in a hash map entry. The slots belong to the map, not to the
+ * elements, since a document may be laid out by several contexts at once. Styles of
+ * other elements are kept in a hash map. Safe for use by several threads.
+ */
+final class CompactStyleMap extends AbstractMap<Element, CalculatedStyle> {
+    private final CompactDocument document;
+    private final AtomicReferenceArray<@Nullable CalculatedStyle> styles;
+    private final Map<Element, CalculatedStyle> others = new ConcurrentHashMap<>();
+
+    CompactStyleMap(CompactDocument document) {
+        this.document = document;
+        this.styles = new AtomicReferenceArray<>(document.getElementCount());
+    }
+
+    private boolean hasSlot(@Nullable Object key) {
+        return key instanceof CompactElement element && element.getOwnerDocument() == document;
+    }
+
+    @Override
+    @Nullable
+    public CalculatedStyle get(@Nullable Object key) {
+        return hasSlot(key) ? styles.get(((CompactElement) key).getElementIndex()) : others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @Nullable
+    public CalculatedStyle put(Element key, CalculatedStyle value) {
+        return hasSlot(key) ? styles.getAndSet(((CompactElement) key).getElementIndex(), value) : others.put(key, value);
+    }
+
+    @Override
+    @Nullable
+    public CalculatedStyle remove(@Nullable Object key) {
+        return hasSlot(key) ? styles.getAndSet(((CompactElement) key).getElementIndex(), null) : others.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < styles.length(); i++) {
+            styles.set(i, null);
+        }
+        others.clear();
+    }
+
+    /**
+     * @return a snapshot of the styles
+     */
+    @Override
+    public Set<Entry<Element, CalculatedStyle>> entrySet() {
+        Set<Entry<Element, CalculatedStyle>> result = new HashSet<>(others.entrySet());
+        NodeList elements = document.getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            CalculatedStyle style = styles.get(i);
+            if (style != null) {
+                result.add(new SimpleImmutableEntry<>((Element) elements.item(i), style));
+            }
+        }
+        return result;
+    }
+}
@@ -27,7 +27,6 @@ import org.xhtmlrenderer.css.constants.PageElementPosition;
 import org.xhtmlrenderer.css.newmatch.PageInfo;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CssContext;
-import org.xhtmlrenderer.css.style.EmptyStyle;
 import org.xhtmlrenderer.newtable.CollapsedBorderValue;
 import org.xhtmlrenderer.newtable.TableBox;
 import org.xhtmlrenderer.newtable.TableCellBox;
@@ -609,6 +608,46 @@ public final class Layer {
         _fixedBackground = b;
     }
 
+    /**
+     * Lays out an absolutely positioned child layer again, for example after its
+     * style changed. Such a layer does not move any other box, so nothing else has
+     * to be laid out. The layer keeps its place in painting order.
+     * Only for continuous (screen) layout, see {@link LayoutUtil#layoutAbsolute}.
+     *
+     * @return the new layer of the child's master box
+     */
+    public Layer relayoutAbsoluteChild(LayoutContext c, Layer child) {
+        BlockBox master = (BlockBox) child.getMaster();
+        int index = getChildren().indexOf(child);
+
+        c.reInit(true);
+        c.pushLayer(this);
+        master.reset(c);
+        master.layout(c);
+        c.popLayer();
+
+        Layer result = master.getLayer();
+        if (isInline()) {
+            result.position(c);
+        }
+        synchronized (this) {
+            if (index >= 0 && _children.remove(result)) {
+                _children.add(Math.min(index, _children.size()), result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lays out the content of a block in this layer again, see {@link BlockBox#relayoutContent}.
+     */
+    public void relayoutContent(LayoutContext c, BlockBox block) {
+        c.reInit(true);
+        c.pushLayer(this);
+        block.relayoutContent(c);
+        c.popLayer();
+    }
+
     @CheckReturnValue
     public synchronized List<Layer> getChildren() {
         return _children == null ? emptyList() : unmodifiableList(_children);
@@ -788,8 +827,7 @@ public final class Layer {
         }
 
         PageInfo pageInfo = c.getCss().getPageStyle(pageName, pseudoPage);
-        CalculatedStyle cs = new EmptyStyle().deriveStyle(pageInfo.getPageStyle());
-        return new PageBox(pageInfo, c, cs, top, pageNo);
+        return new PageBox(pageInfo, c, pageInfo.getCalculatedPageStyle(), top, pageNo);
     }
 
     @Nullable
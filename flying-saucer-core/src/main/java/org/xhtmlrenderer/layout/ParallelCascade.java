@@ -0,0 +1,111 @@
+package org.xhtmlrenderer.layout;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.context.StyleReference;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.EmptyStyle;
+import org.xhtmlrenderer.dom.CompactDocument;
+import org.xhtmlrenderer.util.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Matches and derives the styles of all elements of a document on a fork-join pool.
+ * The children of an element are styled one after the other by one task, so that
+ * they can share the style of their previous sibling, and the children of each of
+ * them are styled by a task of its own.
+ * <p>
+ * The document is only read. Its elements and attributes are visited once on the
+ * calling thread first, which also expands DOMs that build their nodes lazily.
+ */
+final class ParallelCascade {
+    private static final boolean enabled = Configuration.isTrue("xr.css.parallel-cascade", false);
+    private static final int minElements = Configuration.valueAsInt("xr.css.parallel-cascade.min-elements", 2000);
+
+    private ParallelCascade() {
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Puts the styles of the root element and all its descendants into the map,
+     * if the document is large enough to be worth it
+     */
+    static void run(StyleReference css, Element root, Map<Element, CalculatedStyle> styles, ForkJoinPool pool) {
+        // compact documents are built eagerly, and know their size
+        int elements = root.getOwnerDocument() instanceof CompactDocument document
+                ? document.getElementCount()
+                : countElements(root);
+        if (elements < minElements) {
+            return;
+        }
+        CalculatedStyle rootStyle = new EmptyStyle().deriveStyle(css.getCascadedStyle(root, false));
+        styles.put(root, rootStyle);
+        pool.invoke(new ChildrenTask(css, root, rootStyle, styles));
+    }
+
+    private static int countElements(Node parent) {
+        int count = 1;
+        parent.getAttributes();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                count += countElements(child);
+            }
+        }
+        return count;
+    }
+
+    private static final class ChildrenTask extends RecursiveAction {
+        private final StyleReference css;
+        private final Element parent;
+        private final CalculatedStyle parentStyle;
+        private final Map<Element, CalculatedStyle> styles;
+
+        private ChildrenTask(StyleReference css, Element parent, CalculatedStyle parentStyle,
+                             Map<Element, CalculatedStyle> styles) {
+            this.css = css;
+            this.parent = parent;
+            this.parentStyle = parentStyle;
+            this.styles = styles;
+        }
+
+        @Override
+        protected void compute() {
+            List<ChildrenTask> subtasks = new ArrayList<>();
+            Element previous = null;
+            CalculatedStyle previousStyle = null;
+            for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
+                }
+                Element child = (Element) node;
+                CalculatedStyle style = previous != null && css.shareStyle(child, previous) ?
+                        previousStyle :
+                        parentStyle.deriveStyle(css.getCascadedStyle(child, false));
+                styles.put(child, style);
+                if (hasElementChildren(child)) {
+                    subtasks.add(new ChildrenTask(css, child, style, styles));
+                }
+                previous = child;
+                previousStyle = style;
+            }
+            invokeAll(subtasks);
+        }
+
+        private static boolean hasElementChildren(Node node) {
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.xhtmlrenderer.context.StyleReference;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.EmptyStyle;
 import org.xhtmlrenderer.css.value.FontSpecification;
+import org.xhtmlrenderer.dom.CompactDocument;
 import org.xhtmlrenderer.extend.FSCanvas;
 import org.xhtmlrenderer.extend.FontContext;
 import org.xhtmlrenderer.extend.FontResolver;
@@ -54,6 +55,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
@@ -91,6 +94,8 @@ public final class SharedContext {
 
     @Nullable
     private Map<Element, CalculatedStyle> styleMap;
+    @Nullable
+    private ForkJoinPool parallelCascadePool;
 
     private ReplacedElementFactory replacedElementFactory;
     @Nullable
@@ -507,13 +512,21 @@ public final class SharedContext {
         Map<Element, CalculatedStyle> localMap = styleMap;
 
         if (localMap == null) {
-            localMap = new HashMap<>(1024, 0.75f);
+            localMap = newStyleMap(e);
         }
 
         CalculatedStyle result = null;
         if (! restyle) {
             result = localMap.get(e);
         }
+        if (result == null && ! restyle) {
+            Element sibling = getPreviousSiblingElement(e);
+            CalculatedStyle siblingStyle = sibling == null ? null : localMap.get(sibling);
+            if (siblingStyle != null && getCss().shareStyle(e, sibling)) {
+                result = siblingStyle;
+                localMap.put(e, result);
+            }
+        }
         if (result == null) {
             Node parent = e.getParentNode();
             CalculatedStyle parentCalculatedStyle;
@@ -533,6 +546,53 @@ public final class SharedContext {
         return result;
     }
 
+    /**
+     * Computes the styles of all elements of a large document in parallel, before
+     * they are asked for by {@link #getStyle(Element)}. This is only done if
+     * {@code xr.css.parallel-cascade} is enabled and the document has at least
+     * {@code xr.css.parallel-cascade.min-elements} elements.
+     */
+    public void cascadeInParallel(Document document) {
+        Element root = document.getDocumentElement();
+        Map<Element, CalculatedStyle> localMap = styleMap;
+        if (!ParallelCascade.isEnabled() || root == null || (localMap != null && localMap.containsKey(root))) {
+            return;
+        }
+        if (localMap == null) {
+            localMap = newStyleMap(root);
+        }
+        ParallelCascade.run(getCss(), root, localMap,
+                parallelCascadePool != null ? parallelCascadePool : ForkJoinPool.commonPool());
+        styleMap = localMap;
+    }
+
+    /**
+     * Keeps the styles of the elements of a compact document in an array rather than a hash map
+     */
+    private static Map<Element, CalculatedStyle> newStyleMap(Element e) {
+        return e.getOwnerDocument() instanceof CompactDocument document
+                ? new CompactStyleMap(document)
+                : new ConcurrentHashMap<>(1024, 0.75f);
+    }
+
+    /**
+     * Sets the pool computing styles in {@link #cascadeInParallel(Document)}
+     *
+     * @param pool the pool to use, or null for the common fork-join pool
+     */
+    public void setParallelCascadePool(@Nullable ForkJoinPool pool) {
+        parallelCascadePool = pool;
+    }
+
+    @Nullable
+    private static Element getPreviousSiblingElement(Element e) {
+        Node sibling = e.getPreviousSibling();
+        while (sibling != null && sibling.getNodeType() != Node.ELEMENT_NODE) {
+            sibling = sibling.getPreviousSibling();
+        }
+        return (Element) sibling;
+    }
+
     public void reset() {
        styleMap = null;
        idMap.clear();
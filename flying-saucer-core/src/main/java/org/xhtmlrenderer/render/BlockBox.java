@@ -31,6 +31,7 @@ import org.xhtmlrenderer.css.parser.FSRGBColor;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CssContext;
 import org.xhtmlrenderer.css.style.FSDerivedValue;
+import org.xhtmlrenderer.css.style.StyleDifference;
 import org.xhtmlrenderer.css.style.derived.BorderPropertySet;
 import org.xhtmlrenderer.css.style.derived.LengthValue;
 import org.xhtmlrenderer.css.style.derived.RectPropertySet;
@@ -798,6 +799,32 @@ public class BlockBox extends Box implements InlinePaintable {
         layout(c, 0);
     }
 
+    /**
+     * Lays out the content of this block again where it is, keeping its position and
+     * width, after the style of boxes inside it changed. Meant for a block that
+     * establishes a block formatting context, so that its content moves no box outside
+     * it, and that is not cleared, since its clearance depends on the surrounding
+     * context, which is not laid out again. The height may change, and with it the
+     * position of the boxes after this block, which the caller has to check.
+     */
+    public void relayoutContent(LayoutContext c) {
+        BorderPropertySet border = getBorder(c);
+        RectPropertySet margin = getMargin(c);
+        RectPropertySet padding = getPadding(c);
+
+        resetChildren(c);
+        if (getChildrenContentType() == ContentType.INLINE) {
+            removeAllChildren();
+        }
+
+        // layout() adds the margins, borders and padding to the height it started from
+        setHeight(getHeight() - ((int) margin.top() + (int) border.top() + (int) padding.top() +
+                (int) padding.bottom() + (int) border.bottom() + (int) margin.bottom()));
+        setChildrenHeight(0);
+        layout(c);
+        calcChildLocations();
+    }
+
     public void layout(LayoutContext c, int contentStart) {
         CalculatedStyle style = getStyle();
 
@@ -1761,6 +1788,17 @@ public class BlockBox extends Box implements InlinePaintable {
         _minWidth = minWidth;
     }
 
+    /**
+     * Also restyles the inline content, which the line boxes are built from
+     * when this box is laid out again.
+     */
+    @Override
+    public StyleDifference restyle(LayoutContext c) {
+        StyleDifference difference = super.restyle(c);
+        styleText(c);
+        return difference;
+    }
+
     public void styleText(LayoutContext c) {
         styleText(c, getStyle());
     }
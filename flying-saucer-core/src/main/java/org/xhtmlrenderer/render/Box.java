@@ -32,6 +32,7 @@ import org.xhtmlrenderer.css.parser.FSRGBColor;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CalculatedStyle.Edge;
 import org.xhtmlrenderer.css.style.CssContext;
+import org.xhtmlrenderer.css.style.StyleDifference;
 import org.xhtmlrenderer.css.style.derived.BorderPropertySet;
 import org.xhtmlrenderer.css.style.derived.RectPropertySet;
 import org.xhtmlrenderer.layout.Layer;
@@ -856,7 +857,13 @@ public abstract class Box implements Styleable {
         }
     }
 
-    public void restyle(LayoutContext c) {
+    /**
+     * Matches the element of this box and the elements of its descendants again,
+     * for example because the mouse moved over one of them.
+     *
+     * @return how much the styles of the boxes changed
+     */
+    public StyleDifference restyle(LayoutContext c) {
         Element e = getElement();
         CalculatedStyle style = null;
 
@@ -890,18 +897,22 @@ public abstract class Box implements Styleable {
             }
         }
 
+        StyleDifference difference = StyleDifference.NONE;
         if (style != null) {
+            difference = getStyle() == null ? StyleDifference.RELAYOUT : StyleDifference.between(getStyle(), style);
             setStyle(style);
         }
 
-        restyleChildren(c);
+        return difference.combine(restyleChildren(c));
     }
 
-    protected void restyleChildren(LayoutContext c) {
+    protected StyleDifference restyleChildren(LayoutContext c) {
+        StyleDifference difference = StyleDifference.NONE;
         for (int i = 0; i < getChildCount(); i++) {
             Box b = getChild(i);
-            b.restyle(c);
+            difference = difference.combine(b.restyle(c));
         }
+        return difference;
     }
 
     public Box getRestyleTarget() {
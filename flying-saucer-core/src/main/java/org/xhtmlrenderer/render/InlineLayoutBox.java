@@ -28,6 +28,7 @@ import org.xhtmlrenderer.css.parser.FSRGBColor;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CalculatedStyle.Edge;
 import org.xhtmlrenderer.css.style.CssContext;
+import org.xhtmlrenderer.css.style.StyleDifference;
 import org.xhtmlrenderer.css.style.derived.BorderPropertySet;
 import org.xhtmlrenderer.css.style.derived.RectPropertySet;
 import org.xhtmlrenderer.layout.BoxCollector;
@@ -843,19 +844,22 @@ public final class InlineLayoutBox extends Box implements InlinePaintable {
     }
 
     @Override
-    public void restyle(LayoutContext c) {
-        super.restyle(c);
+    public StyleDifference restyle(LayoutContext c) {
+        StyleDifference difference = super.restyle(c);
         calculateTextDecoration(c);
+        return difference;
     }
 
     @Override
-    protected void restyleChildren(LayoutContext c) {
+    protected StyleDifference restyleChildren(LayoutContext c) {
+        StyleDifference difference = StyleDifference.NONE;
         for (int i = 0; i < getInlineChildCount(); i++) {
             Object obj = getInlineChild(i);
             if (obj instanceof Box) {
-                ((Box)obj).restyle(c);
+                difference = difference.combine(((Box)obj).restyle(c));
             }
         }
+        return difference;
     }
 
     @Override
@@ -28,6 +28,7 @@ import org.xhtmlrenderer.css.constants.IdentValue;
 import org.xhtmlrenderer.css.parser.FSRGBColor;
 import org.xhtmlrenderer.css.style.CalculatedStyle;
 import org.xhtmlrenderer.css.style.CssContext;
+import org.xhtmlrenderer.css.style.StyleDifference;
 import org.xhtmlrenderer.layout.BoxCollector;
 import org.xhtmlrenderer.layout.InlineBoxing;
 import org.xhtmlrenderer.layout.InlinePaintable;
@@ -554,15 +555,17 @@ public class LineBox extends Box implements InlinePaintable {
     }
 
     @Override
-    public void restyle(LayoutContext c) {
+    public StyleDifference restyle(LayoutContext c) {
         Box parent = getParent();
         Element e = parent.getElement();
+        StyleDifference difference = StyleDifference.NONE;
         if (e != null) {
-            CalculatedStyle style = c.getSharedContext().getStyle(e, true);
-            setStyle(style.createAnonymousStyle(IdentValue.BLOCK));
+            CalculatedStyle style = c.getSharedContext().getStyle(e, true).createAnonymousStyle(IdentValue.BLOCK);
+            difference = StyleDifference.between(getStyle(), style);
+            setStyle(style);
         }
 
-        restyleChildren(c);
+        return difference.combine(restyleChildren(c));
     }
 
     public boolean isContainsVisibleContent() {
@@ -0,0 +1,224 @@
+package org.xhtmlrenderer.resource;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.util.XRRuntimeException;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+/**
+ * Builds a DOM document straight from the events of a SAX parser, producing the
+ * same tree as an identity transform of a {@link javax.xml.transform.sax.SAXSource}
+ * into a {@link javax.xml.transform.dom.DOMResult}: namespace declarations become
+ * {@code xmlns} attributes, adjacent character data (CDATA sections included) is
+ * merged into one text node, and comments and processing instructions are kept.
+ * Unlike the transform, it leaves out the comments of the DTD, which the transform
+ * adds to the document before its root element. The document type is not kept either.
+ * <p>
+ * Not thread-safe; use one builder per document.
+ */
+final class DOMBuilder extends DefaultHandler implements LexicalHandler {
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+    private static final DOMImplementation DOM_IMPLEMENTATION = domImplementation();
+
+    private final StringBuilder text = new StringBuilder();
+    private final List<String> namespaceDeclarations = new ArrayList<>(4);
+    @Nullable
+    private Document document;
+    @Nullable
+    private Node current;
+    private boolean inDTD;
+
+    /**
+     * Parses {@code source} with {@code xmlReader}, which keeps its entity resolver,
+     * error handler and features, and replaces its content and lexical handlers.
+     */
+    static Document parse(XMLReader xmlReader, InputSource source) throws IOException, SAXException {
+        DOMBuilder builder = new DOMBuilder();
+        parse(xmlReader, source, builder);
+        return builder.takeDocument();
+    }
+
+    /**
+     * Parses {@code source} with {@code xmlReader}, reporting its content and lexical events to {@code handler}.
+     */
+    static <T extends ContentHandler & LexicalHandler> void parse(XMLReader xmlReader, InputSource source, T handler)
+            throws IOException, SAXException {
+        xmlReader.setContentHandler(handler);
+        try {
+            xmlReader.setProperty(LEXICAL_HANDLER, handler);
+        } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+            // comments are lost, like with an identity transform from this reader
+        }
+        xmlReader.parse(source);
+    }
+
+    private static DOMImplementation domImplementation() {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
+        } catch (ParserConfigurationException e) {
+            throw new XRRuntimeException("Failed on configuring DOM document builder.", e);
+        }
+    }
+
+    /**
+     * Hands over the document built, so that the parser, which is pooled, does not keep it alive.
+     */
+    private Document takeDocument() throws SAXException {
+        Document result = document;
+        if (result == null) {
+            throw new SAXException("The parser did not report a document");
+        }
+        document = null;
+        current = null;
+        return result;
+    }
+
+    @Override
+    public void startDocument() {
+        document = DOM_IMPLEMENTATION.createDocument(null, null, null);
+        current = document;
+        text.setLength(0);
+        namespaceDeclarations.clear();
+        inDTD = false;
+    }
+
+    @Override
+    public void endDocument() {
+        flushText();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+        namespaceDeclarations.add(prefix.isEmpty() ? XMLNS_ATTRIBUTE : XMLNS_ATTRIBUTE + ':' + prefix);
+        namespaceDeclarations.add(uri);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        flushText();
+        Element element = document().createElementNS(uri.isEmpty() ? null : uri, qName.isEmpty() ? localName : qName);
+
+        for (int i = 0; i < namespaceDeclarations.size(); i += 2) {
+            element.setAttributeNS(XMLNS_ATTRIBUTE_NS_URI, namespaceDeclarations.get(i), namespaceDeclarations.get(i + 1));
+        }
+        namespaceDeclarations.clear();
+
+        for (int i = 0, length = attributes.getLength(); i < length; i++) {
+            String name = attributes.getQName(i);
+            if (name.isEmpty()) {
+                name = attributes.getLocalName(i);
+            }
+            String namespace = attributes.getURI(i);
+            if (name.equals(XMLNS_ATTRIBUTE) || name.startsWith(XMLNS_ATTRIBUTE + ':')) {
+                // reported with the namespace-prefixes feature, and already added above
+                if (!element.hasAttribute(name)) {
+                    element.setAttributeNS(XMLNS_ATTRIBUTE_NS_URI, name, attributes.getValue(i));
+                }
+            } else {
+                element.setAttributeNS(namespace.isEmpty() ? null : namespace, name, attributes.getValue(i));
+            }
+        }
+
+        current().appendChild(element);
+        current = element;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        flushText();
+        current = current().getParentNode();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        text.append(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        // dropped, as by an identity transform; the WhitespacePreservingFilter reports it as characters
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        if (!inDTD) {
+            flushText();
+            current().appendChild(document().createProcessingInstruction(target, data));
+        }
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) {
+        if (!inDTD) {
+            flushText();
+            current().appendChild(document().createComment(new String(ch, start, length)));
+        }
+    }
+
+    @Override
+    public void startDTD(String name, @Nullable String publicId, @Nullable String systemId) {
+        inDTD = true;
+    }
+
+    @Override
+    public void endDTD() {
+        inDTD = false;
+    }
+
+    @Override
+    public void startEntity(String name) {
+    }
+
+    @Override
+    public void endEntity(String name) {
+    }
+
+    @Override
+    public void startCDATA() {
+    }
+
+    @Override
+    public void endCDATA() {
+    }
+
+    private void flushText() {
+        if (!text.isEmpty()) {
+            current().appendChild(document().createTextNode(text.toString()));
+            text.setLength(0);
+        }
+    }
+
+    private Document document() {
+        if (document == null) {
+            throw new IllegalStateException("Document not started");
+        }
+        return document;
+    }
+
+    private Node current() {
+        if (current == null) {
+            throw new IllegalStateException("Document not started");
+        }
+        return current;
+    }
+}
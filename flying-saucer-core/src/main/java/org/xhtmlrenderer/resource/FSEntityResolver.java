@@ -23,17 +23,20 @@ package org.xhtmlrenderer.resource;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.GeneralUtil;
 import org.xhtmlrenderer.util.XRLog;
 import org.xml.sax.InputSource;
 import org.xml.sax.ext.EntityResolver2;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 /**
@@ -46,6 +49,11 @@ import java.util.logging.Level;
  * picked up.
  * </p>
  * <p>
+ * The catalogs are read once. Unless {@code xr.load.cache-entities} is false,
+ * each local DTD and entity set is also read from the classpath only once, and
+ * then parsed from memory by every document that refers to it.
+ * </p>
+ * <p>
  * The basic form of this class comes from Elliot Rusty Harold, on
  * <a href="http://www.cafeconleche.org/books/xmljava/chapters/ch07s02.html">...</a>
  * </p>
@@ -63,7 +71,14 @@ public class FSEntityResolver implements EntityResolver2 {
      */
     private static final FSEntityResolver instance = new FSEntityResolver();
 
+    private static final String HTML5_DTD = "/resources/schema/html5/entities.dtd";
+
     private final Map<String, String> entities = new HashMap<>();
+    private final boolean cacheEntities = Configuration.isTrue("xr.load.cache-entities", true);
+    /**
+     * The content of the local DTDs and entity sets read so far, by their classpath location
+     */
+    private final Map<String, LocalEntity> cache = new ConcurrentHashMap<>();
 
     // fill the list with URLs
     private FSEntityResolver() {
@@ -92,7 +107,12 @@ public class FSEntityResolver implements EntityResolver2 {
 
         InputSource local = null;
         String url = getEntity(publicID);
-        if (url != null) {
+        LocalEntity cached = url == null || !cacheEntities ? null
+                : cache.computeIfAbsent(url, u -> read(GeneralUtil.getURLFromClasspath(this, u)));
+        if (cached != null) {
+            local = cached.newSource();
+            XRLog.xmlEntities(Level.FINE, "Entity public: " + publicID + " -> " + url + " (cached)");
+        } else if (url != null) {
             URL realUrl = GeneralUtil.getURLFromClasspath(this, url);
             InputStream is = null;
             try {
@@ -116,7 +136,7 @@ public class FSEntityResolver implements EntityResolver2 {
         } else if ("about:legacy-compat".equals(systemID)) {
             // https://www.w3.org/TR/html5/syntax.html#doctype-legacy-string
             // https://www.w3.org/TR/html51/syntax.html#doctype-legacy-string
-            local = newHTML5DoctypeSource();
+            local = html5DoctypeSource();
         } else {
             XRLog.xmlEntities("Entity public: " + publicID + ", no local mapping. Replacing with empty content.");
         }
@@ -134,17 +154,33 @@ public class FSEntityResolver implements EntityResolver2 {
     @Override
     @Nullable
     public InputSource getExternalSubset(String name, String baseURI) {
-        return name.equalsIgnoreCase("html") ? newHTML5DoctypeSource() : null;
+        return name.equalsIgnoreCase("html") ? html5DoctypeSource() : null;
     }
 
-    private static InputSource newHTML5DoctypeSource() {
-        URL dtd = FSEntityResolver.class
-                .getResource("/resources/schema/html5/entities.dtd");
+    private InputSource html5DoctypeSource() {
+        LocalEntity cached = cacheEntities ? cache.computeIfAbsent(HTML5_DTD, u -> read(html5DoctypeURL())) : null;
+        return cached != null ? cached.newSource() : new InputSource(html5DoctypeURL().toExternalForm());
+    }
+
+    private static URL html5DoctypeURL() {
+        URL dtd = FSEntityResolver.class.getResource(HTML5_DTD);
         if (dtd == null) {
-            throw new IllegalStateException("Could not find " +
-                    "/resources/schema/html5/entities.dtd on the classpath");
+            throw new IllegalStateException("Could not find " + HTML5_DTD + " on the classpath");
+        }
+        return dtd;
+    }
+
+    @Nullable
+    private static LocalEntity read(@Nullable URL url) {
+        if (url == null) {
+            return null;
+        }
+        try (InputStream is = url.openStream()) {
+            return new LocalEntity(url.toExternalForm(), is.readAllBytes());
+        } catch (IOException e) {
+            log.error("Failed to read local entity {}", url, e);
+            return null;
         }
-        return new InputSource(dtd.toExternalForm());
     }
 
     private static InputSource newEmptySource() {
@@ -171,4 +207,15 @@ public class FSEntityResolver implements EntityResolver2 {
     public String getEntity(String url) {
         return entities.get(url);
     }
+
+    /**
+     * A local DTD or entity set, read once and parsed from memory every time it is resolved
+     */
+    private record LocalEntity(String systemId, byte[] content) {
+        private InputSource newSource() {
+            InputSource source = new InputSource(new ByteArrayInputStream(content));
+            source.setSystemId(systemId);
+            return source;
+        }
+    }
 }
@@ -22,6 +22,7 @@ package org.xhtmlrenderer.resource;
 import com.google.errorprone.annotations.CheckReturnValue;
 import org.jspecify.annotations.Nullable;
 import org.w3c.dom.Document;
+import org.xhtmlrenderer.dom.CompactDOMBuilder;
 import org.xhtmlrenderer.util.Configuration;
 import org.xhtmlrenderer.util.InputSources;
 import org.xhtmlrenderer.util.XRLog;
@@ -172,6 +173,8 @@ public class XMLResource extends AbstractResource {
 
     private static class XMLResourceBuilder {
 
+        private final boolean buildDirectly = Configuration.isTrue("xr.load.sax-to-dom", true);
+        private final boolean buildCompact = Configuration.isTrue("xr.load.compact-dom", false);
         private final XMLReaderPool parserPool = new XMLReaderPool();
         private final IdentityTransformerPool transformerPool = new IdentityTransformerPool();
 
@@ -187,7 +190,7 @@ public class XMLResource extends AbstractResource {
         private Document parse(InputSource inputSource) {
             XMLReader xmlReader = parserPool.get();
             try {
-                return transform(new SAXSource(xmlReader, inputSource));
+                return buildDirectly ? build(xmlReader, inputSource) : transform(new SAXSource(xmlReader, inputSource));
             } finally {
                 parserPool.release(xmlReader);
             }
@@ -204,6 +207,19 @@ public class XMLResource extends AbstractResource {
             return target;
         }
 
+        private Document build(XMLReader xmlReader, InputSource inputSource) {
+            try {
+                if (buildCompact) {
+                    CompactDOMBuilder builder = new CompactDOMBuilder();
+                    DOMBuilder.parse(xmlReader, inputSource, builder);
+                    return builder.takeDocument();
+                }
+                return DOMBuilder.parse(xmlReader, inputSource);
+            } catch (Exception ex) {
+                throw new XRRuntimeException("Can't load the XML resource (using SAX parser). " + ex.getMessage(), ex);
+            }
+        }
+
         private Document transform(Source source) {
             DOMResult result = new DOMResult();
             Transformer idTransform = transformerPool.get();
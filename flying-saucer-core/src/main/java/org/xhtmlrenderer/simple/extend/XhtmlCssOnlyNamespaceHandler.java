@@ -31,13 +31,16 @@ import org.xhtmlrenderer.simple.NoNamespaceHandler;
 import org.xhtmlrenderer.util.Configuration;
 
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicLong;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Locale.ROOT;
 import static java.util.Objects.requireNonNull;
 import static java.util.Objects.requireNonNullElseGet;
@@ -55,7 +58,6 @@ public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
     private static final String _namespace = "http://www.w3.org/1999/xhtml";
     @Nullable
     private static volatile StylesheetInfo _defaultStylesheet;
-    private static final AtomicLong inlineCssCounter = new AtomicLong();
 
     /**
      * Gets the namespace attribute of the XhtmlNamespaceHandler object
@@ -262,8 +264,24 @@ public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
         }
 
         String media = style.getAttribute("media");
-        String uri = "inline:" + inlineCssCounter.incrementAndGet(); // just some unique value to cache by
-        return new StylesheetInfo(AUTHOR, uri, mediaTypes(media), css);
+        return new StylesheetInfo(AUTHOR, inlineUri(media, css), mediaTypes(media), css);
+    }
+
+    /**
+     * Names an embedded stylesheet after its content, so that identical stylesheets
+     * of different documents are parsed once and cached by the same key.
+     */
+    @CheckReturnValue
+    static String inlineUri(String media, String css) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(media.getBytes(UTF_8));
+            digest.update((byte) 0);
+            digest.update(css.getBytes(UTF_8));
+            return "inline:" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     @NonNull
@@ -24,16 +24,23 @@ import org.jspecify.annotations.Nullable;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xhtmlrenderer.context.StyleReference;
+import org.xhtmlrenderer.css.style.StyleDifference;
 import org.xhtmlrenderer.layout.LayoutContext;
 import org.xhtmlrenderer.layout.PaintingInfo;
 import org.xhtmlrenderer.render.Box;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A HoverListener is used to respond to a mouse hovering over a Box in a {@link org.xhtmlrenderer.swing.BasicPanel}.
  * In particular, it applies any :hover selectors that apply to the Box in question, and resets those styles
- * as the mouse exits the Box.
+ * as the mouse exits the Box. Changes that only affect painting are repainted in place; changes that
+ * affect geometry lay out again the nearest blocks around the boxes that establish a block formatting
+ * context, such as floats or blocks that hide their overflow, as laying out the whole document on every
+ * mouse movement would be far too slow. Only when there is no such block, or when it changes its size,
+ * is the whole document laid out again, see {@link RootPanel#relayout(List)}.
  */
 public class HoverListener extends DefaultFSMouseListener {
     @Nullable
@@ -54,8 +61,6 @@ public class HoverListener extends DefaultFSMouseListener {
             return;
         }
 
-        boolean needRepaint = false;
-
         Element currentlyHovered = getHoveredElement(c.getCss(), box);
 
         if (currentlyHovered == panel.hovered_element) {
@@ -64,13 +69,15 @@ public class HoverListener extends DefaultFSMouseListener {
 
         panel.hovered_element = currentlyHovered;
 
+        StyleDifference difference = StyleDifference.NONE;
+        List<Box> restyled = new ArrayList<>(2);
         boolean targetedRepaint = true;
         Rectangle repaintRegion = null;
 
         // If we moved out of the old block then un-style it
         if (_previouslyHovered != null) {
-            needRepaint = true;
-            _previouslyHovered.restyle(c);
+            difference = difference.combine(_previouslyHovered.restyle(c));
+            restyled.add(_previouslyHovered);
 
             PaintingInfo paintInfo = _previouslyHovered.getPaintingInfo();
 
@@ -84,9 +91,9 @@ public class HoverListener extends DefaultFSMouseListener {
         }
 
         if (currentlyHovered != null) {
-            needRepaint = true;
             Box target = box.getRestyleTarget();
-            target.restyle(c);
+            difference = difference.combine(target.restyle(c));
+            restyled.add(target);
 
             if (targetedRepaint) {
                 PaintingInfo paintInfo = target.getPaintingInfo();
@@ -105,8 +112,17 @@ public class HoverListener extends DefaultFSMouseListener {
             _previouslyHovered = target;
         }
 
-        if (needRepaint) {
-            if (targetedRepaint) {
+        if (difference == StyleDifference.RELAYOUT) {
+            Rectangle relaidOut = panel.relayout(restyled);
+            if (relaidOut == null) {
+                targetedRepaint = false;
+            } else if (repaintRegion != null) {
+                repaintRegion.add(relaidOut);
+            }
+        }
+
+        if (difference != StyleDifference.NONE) {
+            if (targetedRepaint && repaintRegion != null) {
                 panel.repaint(repaintRegion);
             } else {
                 panel.repaint();
@@ -39,6 +39,7 @@ import org.xhtmlrenderer.extend.UserInterface;
 import org.xhtmlrenderer.layout.BoxBuilder;
 import org.xhtmlrenderer.layout.Layer;
 import org.xhtmlrenderer.layout.LayoutContext;
+import org.xhtmlrenderer.layout.PaintingInfo;
 import org.xhtmlrenderer.layout.SharedContext;
 import org.xhtmlrenderer.render.BlockBox;
 import org.xhtmlrenderer.render.Box;
@@ -51,7 +52,9 @@ import org.xhtmlrenderer.util.XRLog;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 
@@ -491,6 +494,114 @@ public class RootPanel extends JPanel implements Scrollable, UserInterface, FSCa
         }
     }
 
+    /**
+     * Lays out boxes again after their style changed in a way that affects layout,
+     * as far as that can be done without laying out the whole document: the nearest
+     * block around each box that establishes a block formatting context is laid out
+     * again, since its content does not move any box outside it. Absolutely positioned
+     * blocks are laid out in their layer, other blocks where they are, as long as they
+     * keep their size. Otherwise, the whole document is laid out again, see
+     * {@link #relayout()}.
+     *
+     * @param restyled the boxes that were restyled, see {@link Box#restyle}
+     * @return the area to repaint, or null if the whole panel has to be repainted
+     */
+    @Nullable
+    protected Rectangle relayout(List<Box> restyled) {
+        LayoutContext c = layoutContext;
+        if (c == null || c.isPrint()) {
+            relayout();
+            return null;
+        }
+
+        List<BlockBox> blocks = new ArrayList<>(restyled.size());
+        for (Box box : restyled) {
+            BlockBox block = findLayoutRoot(box);
+            if (block == null) {
+                relayout();
+                return null;
+            }
+            if (!blocks.contains(block)) {
+                blocks.add(block);
+            }
+        }
+
+        // no size, so that adding the first bounds does not stretch it to the origin
+        Rectangle region = new Rectangle(0, 0, -1, -1);
+        boolean complete = true;
+        for (BlockBox block : blocks) {
+            if (isInsideAnyOf(block, blocks)) {
+                continue;
+            }
+            PaintingInfo before = block.getPaintingInfo();
+            if (isPositioned(block)) {
+                Layer layer = requireNonNull(block.getLayer());
+                requireNonNull(layer.getParent()).relayoutAbsoluteChild(c, layer);
+            } else {
+                int height = block.getHeight();
+                requireNonNull(block.getContainingLayer()).relayoutContent(c, block);
+                if (block.getHeight() != height) {
+                    XRLog.layout(Level.FINE, "Block changed its height after restyle, laying out the document");
+                    relayout();
+                    return null;
+                }
+            }
+            region.add(block.calcPaintingInfo(c, false).getAggregateBounds());
+            if (before == null) {
+                complete = false;
+            } else {
+                region.add(before.getAggregateBounds());
+            }
+        }
+        XRLog.layout(Level.FINE, "Laid out " + blocks.size() + " blocks again after restyle");
+        return complete ? region : null;
+    }
+
+    /**
+     * Finds the block to lay out again for a restyled box. Blocks in the normal flow
+     * are only laid out in place when they keep their width whatever their content,
+     * and when they are not cleared, since their clearance, just like that of
+     * positioned blocks, is computed in the block formatting context around them,
+     * which is not laid out again. Tables lay out their cells themselves.
+     *
+     * @return the nearest absolutely positioned block around the box or the box itself,
+     * or the nearest other block around the box that establishes a block formatting
+     * context, or null if there is none and the document has to be laid out again
+     */
+    @Nullable
+    private static BlockBox findLayoutRoot(Box box) {
+        for (Box current = box; current != null && !current.isRoot(); current = current.getParent()) {
+            if (current.getClass() != BlockBox.class || current.getStyle().isCleared()) {
+                continue;
+            }
+            BlockBox block = (BlockBox) current;
+            CalculatedStyle style = block.getStyle();
+            if (isPositioned(block)) {
+                if (block.getLayer() != null && block.getLayer().getParent() != null) {
+                    return block;
+                }
+            } else if (block != box && style.establishesBFC() && block.getContainingLayer() != null
+                    && !(style.isAutoWidth() && (style.isFloated() || style.isInlineBlock()))) {
+                // not the box itself, whose margins may have changed and moved it in the context around it
+                return block;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPositioned(BlockBox block) {
+        return block.getStyle().isAbsolute() || block.getStyle().isFixed();
+    }
+
+    private static boolean isInsideAnyOf(Box box, List<BlockBox> blocks) {
+        for (Box parent = box.getParent(); parent != null; parent = parent.getParent()) {
+            if (blocks.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public double getLayoutWidth() {
         if (enclosingScrollPane != null) {
             return enclosingScrollPane.getViewportBorderBounds().width;
@@ -0,0 +1,80 @@
+package org.xhtmlrenderer.context;
+
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+class ConcurrentStylesheetCacheTest {
+    private static final long SHEET_SIZE = ConcurrentStylesheetCache.estimateSize(stylesheet("https://0"));
+
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    @Test
+    void loadsEachUriOnce() {
+        ConcurrentStylesheetCache cache = new ConcurrentStylesheetCache(1024 * 1024);
+
+        Stylesheet first = cache.get("https://a", this::load);
+
+        assertThat(cache.get("https://a", this::load)).isSameAs(first);
+        assertThat(loaded).hasValue(1);
+        assertThat(cache.getStatistics().hits()).isEqualTo(1);
+        assertThat(cache.getStatistics().misses()).isEqualTo(1);
+        assertThat(cache.getStatistics().estimatedSize()).isEqualTo(SHEET_SIZE);
+    }
+
+    @Test
+    void remembersFailedLoads() {
+        ConcurrentStylesheetCache cache = new ConcurrentStylesheetCache(1024 * 1024);
+
+        assertThat(cache.get("https://missing", uri -> null)).isNull();
+        assertThat(cache.contains("https://missing")).isTrue();
+        assertThat(cache.get("https://missing", this::load)).isNull();
+        assertThat(loaded).hasValue(0);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedStylesheetsAboveItsSize() {
+        ConcurrentStylesheetCache cache = new ConcurrentStylesheetCache(3 * SHEET_SIZE);
+        cache.get("https://1", this::load);
+        cache.get("https://2", this::load);
+        cache.get("https://3", this::load);
+        cache.get("https://1", this::load);
+
+        cache.get("https://4", this::load);
+
+        assertThat(cache.contains("https://1")).isTrue();
+        assertThat(cache.contains("https://2")).isFalse();
+        assertThat(cache.contains("https://3")).isTrue();
+        assertThat(cache.contains("https://4")).isTrue();
+        assertThat(cache.getStatistics().evictions()).isEqualTo(1);
+        assertThat(cache.getStatistics().estimatedSize()).isEqualTo(3 * SHEET_SIZE);
+    }
+
+    @Test
+    void canBeSharedByFactories() {
+        StylesheetCache cache = new ConcurrentStylesheetCache();
+        StylesheetInfo info = new StylesheetInfo(AUTHOR, "https://shared", List.of("all"), null);
+        Stylesheet stylesheet = stylesheet("https://shared");
+        new StylesheetFactoryImpl(null, cache).putStylesheet("https://shared", stylesheet);
+
+        assertThat(new StylesheetFactoryImpl(null, cache).getStylesheet(info)).isSameAs(stylesheet);
+    }
+
+    private Stylesheet load(String uri) {
+        loaded.incrementAndGet();
+        return stylesheet(uri);
+    }
+
+    private static Stylesheet stylesheet(String uri) {
+        Stylesheet stylesheet = new Stylesheet(uri, AUTHOR);
+        stylesheet.addContent(new Ruleset(AUTHOR));
+        return stylesheet;
+    }
+}
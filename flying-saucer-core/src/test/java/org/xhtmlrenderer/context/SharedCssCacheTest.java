@@ -0,0 +1,45 @@
+package org.xhtmlrenderer.context;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedCssCacheTest {
+    private final SharedCssCache<String, Object> cache = new SharedCssCache<>(8);
+    private final AtomicInteger parsed = new AtomicInteger();
+
+    @Test
+    void parsesEachKeyOnce() {
+        Object first = cache.get("color: red", this::parse);
+        Object second = cache.get("color: red", this::parse);
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.get("color: blue", this::parse)).isNotSameAs(first);
+        assertThat(parsed).hasValue(2);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void holdsNoMoreEntriesThanItsCapacity() {
+        for (int i = 0; i < 20; i++) {
+            cache.get("width: " + i + "px", this::parse);
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    void cachesNothingWithoutCapacity() {
+        SharedCssCache<String, Object> disabled = new SharedCssCache<>(0);
+
+        assertThat(disabled.get("color: red", this::parse)).isNotSameAs(disabled.get("color: red", this::parse));
+        assertThat(disabled.size()).isZero();
+    }
+
+    private Object parse() {
+        parsed.incrementAndGet();
+        return new Object();
+    }
+}
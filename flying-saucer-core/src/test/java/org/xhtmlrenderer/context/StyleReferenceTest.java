@@ -0,0 +1,192 @@
+package org.xhtmlrenderer.context;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.css.newmatch.MatcherTemplate;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.resource.CSSResource;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+class StyleReferenceTest {
+    private static final Map<String, String> stylesheets = Map.of(
+            "/a.css", "@import url(a1.css); @import url(a2.css); p { color: red }",
+            "/a1.css", "p { color: green }",
+            "/a2.css", "p { color: blue }",
+            "/b.css", "p { color: black }",
+            "/c.css", "@media screen { p { color: white } }",
+            "/d.css", "p { color: gray }",
+            "/e.css", "@import url(f.css); p { color: navy }",
+            "/f.css", "@import url(e.css); p { color: teal }");
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::serveSlowly);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void loadsStylesheetsConcurrentlyInCascadeOrder() {
+        NaiveUserAgent userAgent = new NaiveUserAgent();
+        userAgent.setBaseURL("http://localhost:" + server.getAddress().getPort() + "/");
+        StyleReference styleReference = new StyleReference(userAgent);
+        styleReference.setStylesheetLoadingExecutor(executor);
+
+        List<Stylesheet> sheets = styleReference.readAndParseAll(List.of(
+                info("a.css", "all"), info("b.css", "all"), info("c.css", "print"), info("d.css", "print")), "print");
+
+        assertThat(sheets).extracting(Stylesheet::getURI).containsExactly(
+                uri("a1.css"), uri("a2.css"), uri("a.css"), uri("b.css"), uri("c.css"), uri("d.css"));
+        assertThat(maxInFlight.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void loadsStylesheetsOnTheCallingThreadByDefault() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        NaiveUserAgent userAgent = new NaiveUserAgent() {
+            @Override
+            public CSSResource getCSSResource(String uri) {
+                threads.add(Thread.currentThread());
+                return super.getCSSResource(uri);
+            }
+        };
+        userAgent.setBaseURL("http://localhost:" + server.getAddress().getPort() + "/");
+        StyleReference styleReference = new StyleReference(userAgent);
+
+        List<Stylesheet> sheets = styleReference.readAndParseAll(List.of(info("a.css", "all"), info("b.css", "all")), "print");
+
+        assertThat(sheets).hasSize(4);
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    void takesCachedStylesheetsOnTheCallingThread() {
+        AtomicInteger tasks = new AtomicInteger();
+        NaiveUserAgent userAgent = new NaiveUserAgent();
+        userAgent.setBaseURL("http://localhost:" + server.getAddress().getPort() + "/");
+        StyleReference styleReference = new StyleReference(userAgent);
+        styleReference.setStylesheetLoadingExecutor(task -> {
+            tasks.incrementAndGet();
+            executor.execute(task);
+        });
+        List<StylesheetInfo> infos = List.of(info("a.css", "all"), info("b.css", "all"));
+
+        styleReference.readAndParseAll(infos, "print");
+        assertThat(tasks.get()).isEqualTo(4);
+
+        assertThat(styleReference.readAndParseAll(infos, "print")).hasSize(4);
+        assertThat(tasks.get()).isEqualTo(4);
+    }
+
+    @Test
+    void stopsOnImportCycles() {
+        NaiveUserAgent userAgent = new NaiveUserAgent();
+        userAgent.setBaseURL("http://localhost:" + server.getAddress().getPort() + "/");
+        StyleReference styleReference = new StyleReference(userAgent);
+        styleReference.setStylesheetLoadingExecutor(executor);
+
+        List<Stylesheet> sheets = styleReference.readAndParseAll(List.of(info("e.css", "all")), "print");
+
+        assertThat(sheets).extracting(Stylesheet::getURI).containsExactly(uri("f.css"), uri("e.css"));
+    }
+
+    @Test
+    void skipsStylesheetsForOtherMedia() {
+        NaiveUserAgent userAgent = new NaiveUserAgent();
+        userAgent.setBaseURL("http://localhost:" + server.getAddress().getPort() + "/");
+        StyleReference styleReference = new StyleReference(userAgent);
+
+        List<Stylesheet> sheets = styleReference.readAndParseAll(List.of(info("b.css", "screen"), info("d.css", "all")), "print");
+
+        assertThat(sheets).extracting(Stylesheet::getURI).containsExactly(uri("d.css"));
+    }
+
+    @Test
+    void sharesMatcherTemplateBetweenDocumentsWithTheSameStylesheets() {
+        NaiveUserAgent userAgent = new NaiveUserAgent();
+        userAgent.setBaseURL("http://localhost:" + server.getAddress().getPort() + "/");
+        StyleReference styleReference = new StyleReference(userAgent);
+        List<StylesheetInfo> infos = List.of(info("b.css", "all"), info("d.css", "all"));
+
+        MatcherTemplate template = styleReference.getMatcherTemplate(styleReference.readAndParseAll(infos, "print"), "print");
+
+        assertThat(styleReference.getMatcherTemplate(styleReference.readAndParseAll(infos, "print"), "print"))
+                .isSameAs(template);
+        assertThat(styleReference.getMatcherTemplate(styleReference.readAndParseAll(infos, "screen"), "screen"))
+                .isNotSameAs(template);
+        assertThat(template.getSelectorCount()).isEqualTo(2);
+    }
+
+    @Test
+    void sharesMatcherTemplateBetweenStyleReferencesWithTheirOwnStylesheetCaches() {
+        NaiveUserAgent userAgent = new NaiveUserAgent();
+        userAgent.setBaseURL("http://localhost:" + server.getAddress().getPort() + "/");
+        StyleReference first = new StyleReference(userAgent);
+        StyleReference second = new StyleReference(userAgent);
+        List<StylesheetInfo> infos = List.of(info("a.css", "all"), info("d.css", "all"));
+
+        List<Stylesheet> firstSheets = first.readAndParseAll(infos, "print");
+        List<Stylesheet> secondSheets = second.readAndParseAll(infos, "print");
+
+        assertThat(secondSheets.get(0)).isNotSameAs(firstSheets.get(0));
+        assertThat(second.getMatcherTemplate(secondSheets, "print")).isSameAs(first.getMatcherTemplate(firstSheets, "print"));
+    }
+
+    private void serveSlowly(HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(200);
+            String css = stylesheets.get(exchange.getRequestURI().getPath());
+            byte[] body = css == null ? new byte[0] : css.getBytes(UTF_8);
+            exchange.sendResponseHeaders(css == null ? 404 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private String uri(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + "/" + path;
+    }
+
+    private StylesheetInfo info(String path, String media) {
+        return new StylesheetInfo(AUTHOR, uri(path), List.of(media), null);
+    }
+}
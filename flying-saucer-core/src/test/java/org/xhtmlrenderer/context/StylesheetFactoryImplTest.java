@@ -0,0 +1,101 @@
+package org.xhtmlrenderer.context;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xhtmlrenderer.css.sheet.MediaRule;
+import org.xhtmlrenderer.css.sheet.Ruleset;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo;
+import org.xhtmlrenderer.simple.extend.XhtmlCssOnlyNamespaceHandler;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.USER;
+
+class StylesheetFactoryImplTest {
+    @Test
+    void sharesFrozenStyleDeclarations() {
+        Ruleset ruleset = new StylesheetFactoryImpl(null).parseStyleDeclaration(AUTHOR, "color: red; margin: 0");
+
+        assertThat(new StylesheetFactoryImpl(null).parseStyleDeclaration(AUTHOR, "color: red; margin: 0")).isSameAs(ruleset);
+        assertThat(new StylesheetFactoryImpl(null).parseStyleDeclaration(USER, "color: red; margin: 0")).isNotSameAs(ruleset);
+        assertThat(ruleset.isFrozen()).isTrue();
+        assertThatThrownBy(() -> ruleset.addAllProperties(ruleset.getPropertyDeclarations()))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void reusesTheParserOfTheThreadForStyleDeclarations() {
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(null);
+
+        Ruleset longer = factory.parseStyleDeclaration(AUTHOR, "margin-left: 10px; padding-top: 2px; color: blue");
+        Ruleset shorter = factory.parseStyleDeclaration(AUTHOR, "color: red");
+
+        assertThat(longer.getPropertyDeclarations()).hasSize(3);
+        assertThat(shorter.getPropertyDeclarations()).singleElement()
+                .satisfies(declaration -> assertThat(declaration.getValue().getCssText()).isEqualTo("#ff0000"));
+    }
+
+    @Test
+    void sharesFrozenEmbeddedStylesheets() {
+        StylesheetInfo info = new StylesheetInfo(AUTHOR, "inline:test", List.of("all"), "h1 { color: red }");
+        Stylesheet stylesheet = new StylesheetFactoryImpl(null).getStylesheet(info);
+
+        assertThat(new StylesheetFactoryImpl(null).getStylesheet(info)).isSameAs(stylesheet);
+        assertThat(stylesheet.isFrozen()).isTrue();
+        assertThat(stylesheet.getContents()).hasSize(1);
+        assertThatThrownBy(() -> stylesheet.addContent(new Ruleset(AUTHOR)))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void sharesFrozenUserAgentStylesheet() {
+        StylesheetInfo info = new XhtmlCssOnlyNamespaceHandler().getDefaultStylesheet().orElseThrow();
+        Stylesheet stylesheet = new StylesheetFactoryImpl(new NaiveUserAgent()).getStylesheet(info);
+
+        assertThat(new StylesheetFactoryImpl(new NaiveUserAgent()).getStylesheet(info)).isSameAs(stylesheet);
+        assertThat(stylesheet.isFrozen()).isTrue();
+        assertThat(stylesheet.getContents()).isNotEmpty();
+    }
+
+    @Test
+    void skipsMediaRulesForOtherMedia() {
+        String css = "@media screen { .a { color: red } .b { content: '}' } } @media print, screen { .c { color: green } }"
+                + " p { margin: 0 }";
+        StylesheetInfo info = new StylesheetInfo(AUTHOR, "inline:media", List.of("all"), css);
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(null);
+
+        Stylesheet forPrint = factory.getStylesheet(info, "print");
+        Stylesheet forAll = factory.getStylesheet(info);
+
+        assertThat(forPrint.getContents()).hasSize(2);
+        assertThat(forPrint.getContents().get(0)).isInstanceOf(MediaRule.class);
+        assertThat(forAll.getContents()).hasSize(3);
+        assertThat(factory.getStylesheet(info, "print")).isSameAs(forPrint);
+    }
+
+    @Test
+    void cachesStylesheetsParsedForAMediumByUri(@TempDir Path dir) throws IOException {
+        Path file = Files.writeString(dir.resolve("media.css"), "@media screen { p { color: red } } p { margin: 0 }");
+        String uri = file.toUri().toString();
+        StylesheetInfo info = new StylesheetInfo(AUTHOR, uri, List.of("all"), null);
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(new NaiveUserAgent());
+
+        Stylesheet forPrint = factory.getStylesheet(info, "print");
+
+        assertThat(forPrint.getContents()).hasSize(1);
+        assertThat(factory.getStylesheet(info, "print")).isSameAs(forPrint);
+        assertThat(factory.containsStylesheet(uri)).isTrue();
+        factory.removeCachedStylesheet(uri);
+        assertThat(factory.containsStylesheet(uri)).isFalse();
+        assertThat(factory.getStylesheet(info).getContents()).hasSize(2);
+        assertThat(factory.getStylesheet(info, "print").getContents()).hasSize(2);
+    }
+}
@@ -0,0 +1,61 @@
+package org.xhtmlrenderer.css.extend.lib;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ElementPositionIndexTest {
+    private final ElementPositionIndex index = new ElementPositionIndex();
+
+    @Test
+    void countsOnlyElementSiblings() throws Exception {
+        Document doc = parse("<ul> <li>1</li> text <!-- comment --> <li>2</li><li>3</li> </ul>");
+
+        assertThat(index.getPosition(item(doc, 0))).isEqualTo(0);
+        assertThat(index.getPosition(item(doc, 1))).isEqualTo(1);
+        assertThat(index.getPosition(item(doc, 2))).isEqualTo(2);
+        assertThat(index.getPosition(doc.getDocumentElement())).isEqualTo(0);
+    }
+
+    @Test
+    void indexesAgainForInsertedChildren() throws Exception {
+        Document doc = parse("<ul><li>1</li><li>2</li><li>3</li></ul>");
+        Element second = item(doc, 1);
+        Element last = item(doc, 2);
+        assertThat(index.getPosition(last)).isEqualTo(2);
+
+        Element inserted = doc.createElement("li");
+        doc.getDocumentElement().insertBefore(inserted, second);
+        assertThat(index.getPosition(inserted)).isEqualTo(1);
+        assertThat(index.getPosition(last)).isEqualTo(3);
+    }
+
+    @Test
+    void forgetsPositionsWhenInvalidated() throws Exception {
+        Document doc = parse("<ul><li>1</li><li>2</li><li>3</li></ul>");
+        Element second = item(doc, 1);
+        Element last = item(doc, 2);
+        assertThat(index.getPosition(last)).isEqualTo(2);
+
+        doc.getDocumentElement().removeChild(second);
+        assertThat(index.getPosition(second)).isEqualTo(-1);
+        assertThat(index.getPosition(last)).isEqualTo(2);
+
+        index.invalidate(doc.getDocumentElement());
+        assertThat(index.getPosition(last)).isEqualTo(1);
+    }
+
+    private static Element item(Document doc, int index) {
+        return (Element) doc.getElementsByTagName("li").item(index);
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+}
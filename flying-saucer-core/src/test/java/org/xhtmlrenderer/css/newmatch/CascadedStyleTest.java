@@ -0,0 +1,52 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.EmptyStyle;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.USER_AGENT;
+
+class CascadedStyleTest {
+    private final CSSParser parser = new CSSParser((uri, message) -> {});
+
+    @Test
+    void stylesWithSameValuesHaveEqualKeys() {
+        CascadedStyle style = style(AUTHOR, "color: #336699; display: block; margin-left: 2px");
+        CascadedStyle sameValues = style(USER_AGENT, "margin-left: 2px; display: BLOCK; color: #336699 !important");
+
+        assertThat(style.getStyleKey()).isSameAs(style.getStyleKey());
+        assertThat(sameValues.getStyleKey()).isEqualTo(style.getStyleKey());
+        assertThat(sameValues.getStyleKey().getHash()).isEqualTo(style.getStyleKey().getHash());
+        assertThat(style(AUTHOR, "color: #336699; display: block; margin-left: 3px").getStyleKey())
+                .isNotEqualTo(style.getStyleKey());
+        assertThat(style(AUTHOR, "color: #336699; display: inline; margin-left: 2px").getStyleKey())
+                .isNotEqualTo(style.getStyleKey());
+        assertThat(style(AUTHOR, "color: #336699; display: block").getStyleKey())
+                .isNotEqualTo(style.getStyleKey());
+    }
+
+    @Test
+    void derivesOneChildStylePerKey() {
+        CalculatedStyle parent = new EmptyStyle();
+        CalculatedStyle child = parent.deriveStyle(style(AUTHOR, "display: block; color: red"));
+
+        assertThat(parent.deriveStyle(style(AUTHOR, "color: red; display: block"))).isSameAs(child);
+        assertThat(parent.deriveStyle(CascadedStyle.createLayoutStyle(
+                CascadedStyle.createLayoutPropertyDeclaration(CSSName.DISPLAY, IdentValue.INLINE))))
+                .isNotSameAs(child);
+    }
+
+    private CascadedStyle style(Origin origin, String declarations) {
+        List<PropertyDeclaration> properties = parser.parseDeclaration(origin, declarations).getPropertyDeclarations();
+        return new CascadedStyle(properties);
+    }
+}
@@ -0,0 +1,362 @@
+package org.xhtmlrenderer.css.newmatch;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xhtmlrenderer.context.StylesheetFactoryImpl;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.MarginBoxName;
+import org.xhtmlrenderer.css.extend.AttributeResolver;
+import org.xhtmlrenderer.css.extend.lib.DOMTreeResolver;
+import org.xhtmlrenderer.css.sheet.Stylesheet;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+class MatcherTest {
+    private final StylesheetFactoryImpl factory = new StylesheetFactoryImpl(null);
+
+    @Test
+    void matchesSelectorsByIdClassAndElementName() throws Exception {
+        Document doc = parse("<html><body><p id='intro' class='lead note'>x</p><p class='note'>y</p><div>z</div></body></html>");
+        Matcher matcher = matcher("""
+                * { color: black }
+                p { color: green }
+                .note { font-weight: bold }
+                #intro { color: red }
+                div { color: blue }
+                """);
+
+        Element intro = element(doc, "p", 0);
+        Element note = element(doc, "p", 1);
+        Element div = element(doc, "div", 0);
+
+        assertThat(value(matcher, intro, CSSName.COLOR)).isEqualTo("#ff0000");
+        assertThat(value(matcher, intro, CSSName.FONT_WEIGHT)).isEqualTo("bold");
+        assertThat(value(matcher, note, CSSName.COLOR)).isEqualTo("#008000");
+        assertThat(value(matcher, note, CSSName.FONT_WEIGHT)).isEqualTo("bold");
+        assertThat(value(matcher, div, CSSName.COLOR)).isEqualTo("#0000ff");
+        assertThat(matcher.getCascadedStyle(div, false).hasProperty(CSSName.FONT_WEIGHT)).isFalse();
+    }
+
+    @Test
+    void keepsSpecificationOrderForEqualSpecificity() throws Exception {
+        Document doc = parse("<html><body><div class='a b'><span class='c'>x</span></div></body></html>");
+        Matcher matcher = matcher("""
+                .b span { color: red }
+                .a span { color: green }
+                div > .c { color: blue }
+                .a .c { background-color: red }
+                .b > span.c { background-color: green }
+                """);
+
+        Element span = element(doc, "span", 0);
+
+        assertThat(value(matcher, span, CSSName.COLOR)).isEqualTo("#0000ff");
+        assertThat(value(matcher, span, CSSName.BACKGROUND_COLOR)).isEqualTo("#008000");
+    }
+
+    @Test
+    void descendantSelectorsApplyAtAnyDepth() throws Exception {
+        Document doc = parse("<html><body><table class='grid'><tr><td><b>x</b></td></tr></table><b>y</b></body></html>");
+        Matcher matcher = matcher("""
+                .grid b { color: red }
+                table > b { color: green }
+                """);
+
+        assertThat(value(matcher, element(doc, "b", 0), CSSName.COLOR)).isEqualTo("#ff0000");
+        assertThat(matcher.getCascadedStyle(element(doc, "b", 1), false).hasProperty(CSSName.COLOR)).isFalse();
+    }
+
+    @Test
+    void rejectsSelectorsNeedingKeysThatAreNotInTheDocument() throws Exception {
+        Document doc = parse("<html><body><div class='report'><p>x</p></div></body></html>");
+        Matcher matcher = matcher("""
+                .report p { color: red }
+                div .missing p { color: green }
+                body #nowhere { color: blue }
+                """);
+
+        assertThat(value(matcher, element(doc, "p", 0), CSSName.COLOR)).isEqualTo("#ff0000");
+        assertThat(matcher.getStatistics().getRejectedSelectors()).isEqualTo(2);
+        assertThat(matcher.getStatistics().getEvaluatedSelectors()).isGreaterThan(0);
+    }
+
+    @Test
+    void appliesSelectorsToClassesAddedBeforeARestyle() throws Exception {
+        Document doc = parse("<html><body><div><p>x</p></div></body></html>");
+        Matcher matcher = matcher("""
+                .late p { color: red }
+                p.marked { font-weight: bold }
+                """);
+        Element div = element(doc, "div", 0);
+        Element p = element(doc, "p", 0);
+        assertThat(matcher.getCascadedStyle(p, false).hasProperty(CSSName.COLOR)).isFalse();
+
+        div.setAttribute("class", "late");
+        p.setAttribute("class", "marked");
+        matcher.getCascadedStyle(div, true);
+        matcher.getCascadedStyle(p, true);
+
+        assertThat(value(matcher, p, CSSName.COLOR)).isEqualTo("#ff0000");
+        assertThat(value(matcher, p, CSSName.FONT_WEIGHT)).isEqualTo("bold");
+    }
+
+    @Test
+    void similarSiblingsShareTheirStyle() throws Exception {
+        Document doc = parse("<html><body><table><tr><td class='n'>1</td><td class='n'>2</td><td>3</td><td id='x' class='n'>4</td></tr></table></body></html>");
+        Matcher matcher = matcher("""
+                td.n { text-align: right }
+                td:focus { color: red }
+                """);
+
+        Element first = element(doc, "td", 0);
+        matcher.getCascadedStyle(first, false);
+
+        assertThat(matcher.shareStyle(element(doc, "td", 1), first)).isTrue();
+        assertThat(value(matcher, element(doc, "td", 1), CSSName.TEXT_ALIGN)).isEqualTo("right");
+        assertThat(matcher.shareStyle(element(doc, "td", 2), element(doc, "td", 1))).isFalse();
+        matcher.getCascadedStyle(element(doc, "td", 2), false);
+        assertThat(matcher.shareStyle(element(doc, "td", 3), element(doc, "td", 2))).isFalse();
+        assertThat(matcher.getStatistics().getSharedStyles()).isEqualTo(1);
+        assertThat(matcher.getStatistics().getStyleSharingHitRate()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    void siblingsDoNotShareStyleWhenSelectorsDependOnPosition() throws Exception {
+        Document doc = parse("<html><body><ul><li>1</li><li>2</li></ul></body></html>");
+        Matcher matcher = matcher("li:first-child { font-weight: bold }");
+
+        Element first = element(doc, "li", 0);
+        matcher.getCascadedStyle(first, false);
+
+        assertThat(matcher.shareStyle(element(doc, "li", 1), first)).isFalse();
+        assertThat(matcher.getCascadedStyle(element(doc, "li", 1), false).hasProperty(CSSName.FONT_WEIGHT)).isFalse();
+    }
+
+    @Test
+    void elementsMatchedBySameSelectorsShareTheirCascadedStyle() throws Exception {
+        Document doc = parse("<html><body><div><p class='a'>1</p></div><div><p class='a'>2</p>" +
+                "<p class='a' style='color: blue'>3</p></div></body></html>");
+        Matcher matcher = matcher("p.a { color: red }");
+
+        CascadedStyle first = matcher.getCascadedStyle(element(doc, "p", 0), false);
+        CascadedStyle inline = matcher.getCascadedStyle(element(doc, "p", 2), false);
+
+        assertThat(matcher.getCascadedStyle(element(doc, "p", 1), false)).isSameAs(first);
+        assertThat(inline).isNotSameAs(first);
+        assertThat(inline.propertyByName(CSSName.COLOR).getValue().getCssText()).isEqualTo("#0000ff");
+        assertThat(matcher.getCascadedStyle(element(doc, "p", 0), false)).isSameAs(first);
+    }
+
+    @Test
+    void matchersSharingATemplateKeepTheStateOfTheirOwnDocument() throws Exception {
+        Stylesheet stylesheet = factory.parse(new StringReader("""
+                .a p { color: red }
+                p:hover { color: blue }
+                @font-face { font-family: x; src: url(x.ttf) }
+                """), "test", AUTHOR);
+        MatcherTemplate template = new MatcherTemplate(List.of(stylesheet), "print");
+        Document first = parse("<html><body><div class='a'><p>1</p></div></body></html>");
+        Document second = parse("<html><body><div><p>2</p></div><div class='a'><p>3</p></div></body></html>");
+        Matcher firstMatcher = new Matcher(new DOMTreeResolver(), new TestAttributeResolver(), factory, template);
+        Matcher secondMatcher = new Matcher(new DOMTreeResolver(), new TestAttributeResolver(), factory, template);
+
+        CascadedStyle styled = firstMatcher.getCascadedStyle(element(first, "p", 0), false);
+
+        assertThat(secondMatcher.getCascadedStyle(element(second, "p", 0), false).hasProperty(CSSName.COLOR)).isFalse();
+        assertThat(secondMatcher.getCascadedStyle(element(second, "p", 1), false)).isSameAs(styled);
+        assertThat(firstMatcher.isHoverStyled(element(first, "p", 0))).isTrue();
+        assertThat(firstMatcher.isHoverStyled(element(second, "p", 1))).isFalse();
+        assertThat(secondMatcher.getFontFaceRules()).hasSize(1).isSameAs(firstMatcher.getFontFaceRules());
+    }
+
+    @Test
+    void reusesPageStylePerPageNameAndPseudoPage() {
+        Matcher matcher = matcher("""
+                @page { margin: 1cm; @top-center { content: "Title" } }
+                @page :first { margin-top: 3cm }
+                @page toc { margin-left: 2cm }
+                """);
+
+        PageInfo first = matcher.getPageCascadedStyle(null, "first");
+
+        assertThat(matcher.getPageCascadedStyle(null, "first")).isSameAs(first);
+        assertThat(matcher.getPageCascadedStyle(null, "right")).isNotSameAs(first);
+        assertThat(matcher.getPageCascadedStyle("toc", "first")).isNotSameAs(first);
+        assertThat(first.getCalculatedPageStyle()).isSameAs(first.getCalculatedPageStyle());
+        assertThat(first.getPageStyle().propertyByName(CSSName.MARGIN_TOP).getValue().getCssText()).isEqualTo("3cm");
+        assertThat(matcher.getPageCascadedStyle("toc", "right").getPageStyle().propertyByName(CSSName.MARGIN_LEFT)
+                .getValue().getCssText()).isEqualTo("2cm");
+        assertThat(first.getMarginBoxes()).containsKey(MarginBoxName.TOP_CENTER);
+        assertThatThrownBy(() -> first.getMarginBoxes().clear()).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void matchesTheSameElementsFromManyThreads() throws Exception {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 200; i++) {
+            html.append("<div class='row'><p class='").append(i % 2 == 0 ? "even" : "odd").append("'>x</p></div>");
+        }
+        Document doc = parse(html.append("</body></html>").toString());
+        Matcher matcher = matcher("""
+                .row p { color: red }
+                .row p.odd { color: green }
+                p:hover { color: blue }
+                """);
+        List<Element> paragraphs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            paragraphs.add(element(doc, "p", i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    List<String> colors = new ArrayList<>();
+                    for (int i = 0; i < 200; i++) {
+                        colors.add(value(matcher, paragraphs.get(i), CSSName.COLOR));
+                    }
+                    return colors;
+                }));
+            }
+            for (Future<List<String>> result : results) {
+                List<String> colors = result.get();
+                for (int i = 0; i < 200; i++) {
+                    assertThat(colors.get(i)).isEqualTo(i % 2 == 0 ? "#ff0000" : "#008000");
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(matcher.isHoverStyled(paragraphs.get(199))).isTrue();
+    }
+
+    @Test
+    void profilesTheEvaluatedSelectors() throws Exception {
+        Document doc = parse("<html><body><ul><li class='item'><a href='http://x'>1</a></li><li class='item'>2</li><li class='item'>3</li></ul></body></html>");
+        Matcher matcher = matcher("""
+                li.item { color: red }
+                ul > li:first-child a[href^="http"] { color: green }
+                """);
+        SelectorProfiler profiler = new SelectorProfiler();
+        List<String> evaluated = new ArrayList<>();
+        profiler.addListener((selector, element, matched, nanos) -> evaluated.add(element.getNodeName()));
+        profiler.addDocument("test", matcher.getStatistics());
+        matcher.setProfiler(profiler);
+
+        for (int i = 0; i < 3; i++) {
+            value(matcher, element(doc, "li", i), CSSName.COLOR);
+        }
+        assertThat(value(matcher, element(doc, "a", 0), CSSName.COLOR)).isEqualTo("#008000");
+
+        assertThat(profiler.getProfiles()).extracting(p -> p.getSelector().toCss(), SelectorProfiler.SelectorProfile::getEvaluations,
+                SelectorProfiler.SelectorProfile::getMatches).containsExactlyInAnyOrder(
+                tuple("li.item", 3L, 3L),
+                tuple("ul > li:first-child a[href^=\"http\"]", 1L, 1L),
+                tuple("... > li:first-child a[href^=\"http\"]", 3L, 1L),
+                tuple("... a[href^=\"http\"]", 1L, 1L));
+        assertThat(evaluated).hasSize(8);
+        assertThat(matcher.getStatistics().getMatchedElements()).isEqualTo(7);
+        assertThat(matcher.getStatistics().getMapperHitRate()).isEqualTo(1.0 / 7);
+        assertThat(matcher.getStatistics().getCascadeNanos()).isPositive();
+        assertThat(profiler.report(10)).contains("test: 7 elements matched").contains("li.item");
+        assertThat(profiler.report(1).lines()).hasSize(3);
+    }
+
+    private Matcher matcher(String css) {
+        Stylesheet stylesheet = factory.parse(new StringReader(css), "test", AUTHOR);
+        return new Matcher(new DOMTreeResolver(), new TestAttributeResolver(), factory, List.of(stylesheet), "print");
+    }
+
+    private static String value(Matcher matcher, Element element, CSSName property) {
+        return matcher.getCascadedStyle(element, false).propertyByName(property).getValue().getCssText();
+    }
+
+    private static Element element(Document doc, String name, int index) {
+        return (Element) doc.getElementsByTagName(name).item(index);
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // nodes of a deferred Xerces DOM are expanded when first read, which is not thread-safe
+        factory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static class TestAttributeResolver implements AttributeResolver {
+        @Override
+        public String getAttributeValue(Node e, String attrName) {
+            Element element = (Element) e;
+            return element.hasAttribute(attrName) ? element.getAttribute(attrName) : null;
+        }
+
+        @Override
+        public String getAttributeValue(Node e, String namespaceURI, String attrName) {
+            return getAttributeValue(e, attrName);
+        }
+
+        @Override
+        public String getClass(Node e) {
+            return getAttributeValue(e, "class");
+        }
+
+        @Override
+        public String getID(Node e) {
+            return getAttributeValue(e, "id");
+        }
+
+        @Override
+        public String getNonCssStyling(Node e) {
+            return null;
+        }
+
+        @Override
+        public String getElementStyling(Node e) {
+            return getAttributeValue(e, "style");
+        }
+
+        @Override
+        public String getLang(Node e) {
+            return getAttributeValue(e, "lang");
+        }
+
+        @Override
+        public boolean isLink(Node e) {
+            return false;
+        }
+
+        @Override
+        public boolean isVisited(Node e) {
+            return false;
+        }
+
+        @Override
+        public boolean isHover(Node e) {
+            return false;
+        }
+
+        @Override
+        public boolean isActive(Node e) {
+            return false;
+        }
+
+        @Override
+        public boolean isFocus(Node e) {
+            return false;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.xhtmlrenderer.css.sheet.Stylesheet;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.USER_AGENT;
@@ -99,4 +100,26 @@ public class ParserTest {
         assertThat(propertyDeclaration.getCSSName()).hasToString("background-image");
         assertThat(propertyDeclaration.getValue().getCssText()).isEqualTo("url('something')");
     }
+
+    @Test
+    public void parseDeclarationsInPlace() throws IOException {
+        String declarations = "color: RED; font-family: 'A\\42 c', Sans; background-image: url( x.png ); list-style-type: \\64isc";
+        char[] window = ("p { " + declarations + " } q").toCharArray();
+        CSSParser p = new CSSParser(errorHandler);
+
+        List<String> fromString = cssTexts(p.parseDeclaration(USER_AGENT, declarations));
+        List<String> fromWindow = cssTexts(p.parseDeclaration(USER_AGENT, window, 4, 4 + declarations.length()));
+        Stylesheet stylesheet = p.parseStylesheet(null, USER_AGENT, new StringReader(test));
+        List<String> fromReader = cssTexts(p.parseDeclaration(USER_AGENT, new StringReader(declarations)));
+
+        assertThat(fromString).containsExactly("#ff0000", "ABc,Sans", "url( x.png )", "disc");
+        assertThat(fromWindow).isEqualTo(fromString);
+        assertThat(fromReader).isEqualTo(fromString);
+        assertThat(stylesheet.getContents()).hasSize(1);
+        assertThat(window).isEqualTo(("p { " + declarations + " } q").toCharArray());
+    }
+
+    private static List<String> cssTexts(Ruleset ruleset) {
+        return ruleset.getPropertyDeclarations().stream().map(d -> d.getValue().getCssText()).toList();
+    }
 }
@@ -0,0 +1,71 @@
+package org.xhtmlrenderer.css.parser;
+
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.css.sheet.PropertyDeclaration;
+import org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.USER_AGENT;
+
+class PropertyDeclarationPoolTest {
+    private final CSSParser parser = new CSSParser((uri, message) -> {});
+
+    @Test
+    void parsedStylesShareEqualDeclarations() {
+        List<PropertyDeclaration> first = parse(AUTHOR, "color: #000; margin-top: 0; display: block");
+        List<PropertyDeclaration> second = parse(AUTHOR, "display: block; color: #000000; margin-top: 0");
+
+        assertThat(second.get(0)).isSameAs(first.get(2));
+        assertThat(second.get(1)).isSameAs(first.get(0));
+        assertThat(second.get(2)).isSameAs(first.get(1));
+    }
+
+    @Test
+    void keepsDeclarationsWithOtherImportanceOrOriginApart() {
+        PropertyDeclaration color = parse(AUTHOR, "color: red").get(0);
+
+        assertThat(parse(AUTHOR, "color: red !important").get(0)).isNotSameAs(color);
+        assertThat(parse(USER_AGENT, "color: red").get(0)).isNotSameAs(color);
+        assertThat(parse(AUTHOR, "color: blue").get(0)).isNotSameAs(color);
+    }
+
+    @Test
+    void doesNotShareListsAndFunctions() {
+        PropertyDeclarationPool pool = new PropertyDeclarationPool(16);
+
+        pool.intern(parse(AUTHOR, "font-family: Arial, serif; content: counter(item); counter-reset: item"));
+
+        assertThat(pool.size()).isZero();
+    }
+
+    @Test
+    void staysWithinCapacity() {
+        PropertyDeclarationPool pool = new PropertyDeclarationPool(8);
+
+        for (int i = 0; i < 20; i++) {
+            pool.intern(parse(AUTHOR, "margin-left: " + i + "px"));
+        }
+        PropertyDeclaration margin = pool.intern(parse(AUTHOR, "margin-left: 1cm").get(0));
+
+        assertThat(pool.size()).isLessThanOrEqualTo(8);
+        assertThat(pool.intern(parse(AUTHOR, "margin-left: 1cm").get(0))).isSameAs(margin);
+        assertThat(pool.getHits()).isEqualTo(1);
+        assertThat(pool.getMisses()).isEqualTo(21);
+    }
+
+    @Test
+    void sharesNothingWithoutCapacity() {
+        PropertyDeclarationPool pool = new PropertyDeclarationPool(0);
+        PropertyDeclaration color = parse(AUTHOR, "color: red").get(0);
+
+        assertThat(pool.intern(color)).isSameAs(color);
+        assertThat(pool.size()).isZero();
+    }
+
+    private List<PropertyDeclaration> parse(Origin origin, String declarations) {
+        return parser.parseDeclaration(origin, declarations).getPropertyDeclarations();
+    }
+}
@@ -0,0 +1,143 @@
+package org.xhtmlrenderer.css.sheet;
+
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.css.newmatch.Selector;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.parser.CounterData;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.xhtmlrenderer.css.parser.PropertyValue.Type.VALUE_TYPE_LIST;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.USER_AGENT;
+
+class StylesheetSnapshotTest {
+    private static final String URI = "http://example.com/styles/site.css";
+    private static final String CSS = """
+            @import url(print.css) print;
+            @font-face { font-family: Deja; src: url(fonts/deja.ttf) }
+            body { margin: 0 auto; font: bold 12px/1.5 "Deja", serif; background: url(img/bg.png) no-repeat }
+            ul > li:first-child + li.odd:nth-child(2n+1), a[href^="http"]:hover::before { content: "\\2192" counter(item) }
+            div#main p:lang(en) { counter-increment: item 2; color: #336699 !important }
+            @media print, screen { h1 { page-break-before: always; background-image: url(/logo.png) } }
+            @page toc:first { size: A4 landscape; @top-center { content: "Contents" } }
+            """;
+
+    @Test
+    void readsWhatWasParsed() throws IOException {
+        Stylesheet parsed = new CSSParser((uri, message) -> {}).parseStylesheet(URI, USER_AGENT, new StringReader(CSS));
+
+        Stylesheet snapshot = read(write(CSS), StylesheetSnapshot.hash(CSS), false);
+
+        assertThat(snapshot.getURI()).isEqualTo(URI);
+        assertThat(snapshot.getOrigin()).isEqualTo(USER_AGENT);
+        assertThat(describe(snapshot)).isEqualTo(describe(parsed));
+        assertThat(snapshot.getImportRules()).singleElement()
+                .extracting(StylesheetInfo::getUri).isEqualTo("http://example.com/styles/print.css");
+    }
+
+    @Test
+    void movesRelativeUrlsToTheStylesheet() {
+        assertThat(StylesheetSnapshot.relocate("snapshot://flying-saucer/parent/stylesheet/img/a.png", URI))
+                .isEqualTo("http://example.com/styles/img/a.png");
+        assertThat(StylesheetSnapshot.relocate("snapshot://flying-saucer/img/a.png", URI))
+                .isEqualTo("http://example.com/img/a.png");
+        assertThat(StylesheetSnapshot.relocate("https://example.org/a.png", URI))
+                .isEqualTo("https://example.org/a.png");
+    }
+
+    @Test
+    void rejectsSnapshotOfOtherCss() throws IOException {
+        byte[] snapshot = write(CSS);
+
+        assertThatThrownBy(() -> read(snapshot, StylesheetSnapshot.hash("p { color: red }"), false))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("other CSS");
+    }
+
+    @Test
+    void rejectsCmykColorsUnlessSupported() throws IOException {
+        String css = "p { color: cmyk(0, 0.5, 0.5, 0) }";
+        byte[] snapshot = write(css);
+
+        assertThatThrownBy(() -> read(snapshot, StylesheetSnapshot.hash(css), false))
+                .isInstanceOf(IOException.class);
+        assertThat(describe(read(snapshot, StylesheetSnapshot.hash(css), true))).contains("cmyk");
+    }
+
+    @Test
+    void refusesImportsFromParentDirectory() {
+        assertThatThrownBy(() -> write("@import \"../base.css\";"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("parent directory");
+    }
+
+    private static byte[] write(String css) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StylesheetSnapshot.write(StylesheetSnapshot.compile(css), StylesheetSnapshot.hash(css), out);
+        return out.toByteArray();
+    }
+
+    private static Stylesheet read(byte[] snapshot, String hash, boolean supportCMYKColors) throws IOException {
+        return StylesheetSnapshot.read(new ByteArrayInputStream(snapshot), hash, URI, USER_AGENT, supportCMYKColors);
+    }
+
+    private static String describe(Stylesheet stylesheet) {
+        StringBuilder result = new StringBuilder();
+        for (Object content : stylesheet.getContents()) {
+            if (content instanceof Ruleset ruleset) {
+                describe(result, ruleset);
+            } else if (content instanceof MediaRule mediaRule) {
+                result.append("@media ").append(mediaRule.getMediaTypes()).append('\n');
+                mediaRule.getContents().forEach(ruleset -> describe(result, ruleset));
+            } else if (content instanceof PageRule pageRule) {
+                result.append("@page ").append(pageRule.getName()).append(':').append(pageRule.getPseudoPage()).append('\n');
+                for (Map.Entry<?, List<PropertyDeclaration>> marginBox : pageRule.getMarginBoxes().entrySet()) {
+                    result.append(marginBox.getKey()).append('\n');
+                    marginBox.getValue().forEach(declaration -> describe(result, declaration));
+                }
+                describe(result, pageRule.getRuleset());
+            }
+        }
+        stylesheet.getFontFaceRules().forEach(rule -> describe(result, rule.getRuleset()));
+        return result.toString();
+    }
+
+    private static void describe(StringBuilder result, Ruleset ruleset) {
+        assertThat(ruleset.getOrigin()).isEqualTo(USER_AGENT);
+        for (Selector selector : ruleset.getFSSelectors()) {
+            assertThat(selector.getRuleset()).isSameAs(ruleset);
+            for (Selector s = selector; s != null; s = s.getChainedSelector()) {
+                result.append(s.getAxis()).append(' ').append(s.getPseudoElement())
+                        .append(' ').append(s.getSpecificityB()).append(s.getSpecificityC()).append(s.getSpecificityD())
+                        .append(' ').append(s.isPseudoClass(Selector.HOVER_PSEUDOCLASS)).append(" > ");
+            }
+            result.append('\n');
+        }
+        ruleset.getPropertyDeclarations().forEach(declaration -> describe(result, declaration));
+    }
+
+    private static void describe(StringBuilder result, PropertyDeclaration declaration) {
+        assertThat(declaration.getOrigin()).isNotEqualTo(AUTHOR);
+        PropertyValue value = (PropertyValue) declaration.getValue();
+        // the CSS text of a list is the toString() of its values
+        String cssText = value.getPropertyValueType() == VALUE_TYPE_LIST ? "" : value.getCssText();
+        result.append(declaration.getPropertyName()).append(": ").append(cssText)
+                .append(' ').append(value.getStringValue())
+                .append(' ').append(value.getPropertyValueType())
+                .append(' ').append(value.getValues().stream()
+                        .map(v -> v instanceof CounterData counter ? counter.getName() + counter.getValue() : v)
+                        .toList())
+                .append(' ').append(value.getFunction())
+                .append(declaration.isImportant() ? " !important" : "")
+                .append('\n');
+    }
+}
@@ -0,0 +1,50 @@
+package org.xhtmlrenderer.css.sheet;
+
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.css.constants.MarginBoxName;
+import org.xhtmlrenderer.css.parser.CSSParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+class StylesheetTest {
+    private static final String CSS = """
+            p { color: red }
+            @font-face { font-family: Deja; src: url(deja.ttf) }
+            @media print { h1 { page-break-before: always } }
+            @page toc { size: A4; @top-center { content: "Contents" } }
+            """;
+
+    @Test
+    void freezesAllRules() throws IOException {
+        Stylesheet sheet = new CSSParser((uri, message) -> {})
+                .parseStylesheet("http://example.com/site.css", AUTHOR, new StringReader(CSS)).freeze();
+
+        Ruleset ruleset = new Ruleset(AUTHOR);
+        assertThatThrownBy(() -> sheet.addContent(ruleset)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> sheet.getContents().clear()).isInstanceOf(UnsupportedOperationException.class);
+
+        FontFaceRule fontFace = sheet.getFontFaceRules().get(0);
+        assertThat(fontFace.getRuleset().isFrozen()).isTrue();
+        assertThat(fontFace.hasFontFamily()).isTrue();
+        assertThatThrownBy(() -> fontFace.addContent(ruleset)).isInstanceOf(UnsupportedOperationException.class);
+
+        MediaRule media = (MediaRule) sheet.getContents().get(1);
+        assertThat(media.getContents()).allMatch(Ruleset::isFrozen);
+        assertThatThrownBy(() -> media.addContent(ruleset)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> media.addMedium("screen")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> media.getContents().clear()).isInstanceOf(UnsupportedOperationException.class);
+
+        PageRule page = (PageRule) sheet.getContents().get(2);
+        assertThat(page.getRuleset().isFrozen()).isTrue();
+        assertThat(page.getMarginBoxes()).containsKey(MarginBoxName.TOP_CENTER);
+        assertThatThrownBy(() -> page.getMarginBoxes().clear()).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> page.getMarginBoxProperties(MarginBoxName.TOP_CENTER).clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> page.setPos(1)).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
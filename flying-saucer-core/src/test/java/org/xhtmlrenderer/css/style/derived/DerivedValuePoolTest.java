@@ -0,0 +1,62 @@
+package org.xhtmlrenderer.css.style.derived;
+
+import org.junit.jupiter.api.Test;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.parser.CSSParser;
+import org.xhtmlrenderer.css.parser.PropertyValue;
+import org.xhtmlrenderer.css.style.FSDerivedValue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.xhtmlrenderer.css.sheet.StylesheetInfo.Origin.AUTHOR;
+
+class DerivedValuePoolTest {
+    private final CSSParser parser = new CSSParser((uri, message) -> {});
+
+    @Test
+    void sharesValuesThatDoNotDependOnTheStyle() {
+        assertThat(derive(CSSName.COLOR, "#336699")).isSameAs(derive(CSSName.BACKGROUND_COLOR, "#336699"));
+        assertThat(derive(CSSName.MARGIN_TOP, "2px")).isSameAs(derive(CSSName.MARGIN_TOP, "2px"));
+        assertThat(derive(CSSName.ORPHANS, "3")).isSameAs(derive(CSSName.ORPHANS, "3"));
+        assertThat(derive(CSSName.FONT_FAMILY, "Arial, serif")).isSameAs(derive(CSSName.FONT_FAMILY, "Arial, serif"));
+        assertThat(derive(CSSName.MARGIN_TOP, "2px")).isNotSameAs(derive(CSSName.MARGIN_TOP, "2pt"));
+    }
+
+    @Test
+    void doesNotShareRelativeLengths() {
+        assertThat(derive(CSSName.MARGIN_TOP, "2em")).isNotSameAs(derive(CSSName.MARGIN_TOP, "2em"));
+        assertThat(derive(CSSName.MARGIN_TOP, "50%")).isNotSameAs(derive(CSSName.MARGIN_TOP, "50%"));
+    }
+
+    @Test
+    void countsHitsMissesAndEvictions() {
+        DerivedValuePool pool = new DerivedValuePool(8);
+
+        for (int i = 0; i < 20; i++) {
+            pool.get(CSSName.COLOR, value(CSSName.COLOR, "rgb(" + i + ", 0, 0)"), ColorValue::new);
+        }
+        pool.get(CSSName.COLOR, value(CSSName.COLOR, "rgb(19, 0, 0)"), ColorValue::new);
+
+        DerivedValuePool.Statistics statistics = pool.getStatistics();
+        assertThat(statistics.hits()).isEqualTo(1);
+        assertThat(statistics.misses()).isEqualTo(20);
+        assertThat(statistics.evictions()).isPositive();
+        assertThat(statistics.size()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    void createsNewValuesWithoutCapacity() {
+        DerivedValuePool pool = new DerivedValuePool(0);
+        PropertyValue red = value(CSSName.COLOR, "red");
+
+        assertThat(pool.get(CSSName.COLOR, red, ColorValue::new)).isNotSameAs(pool.get(CSSName.COLOR, red, ColorValue::new));
+        assertThat(pool.getStatistics().size()).isZero();
+    }
+
+    private FSDerivedValue derive(CSSName cssName, String css) {
+        return DerivedValueFactory.newDerivedValue(null, cssName, value(cssName, css));
+    }
+
+    private PropertyValue value(CSSName cssName, String css) {
+        return parser.parsePropertyValue(cssName, AUTHOR, css);
+    }
+}
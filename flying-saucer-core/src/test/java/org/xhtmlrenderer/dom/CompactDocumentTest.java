@@ -0,0 +1,132 @@
+package org.xhtmlrenderer.dom;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xhtmlrenderer.resource.FSEntityResolver;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.swing.Java2DRenderer;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.w3c.dom.Node.DOCUMENT_POSITION_CONTAINED_BY;
+import static org.w3c.dom.Node.DOCUMENT_POSITION_FOLLOWING;
+import static org.w3c.dom.Node.DOCUMENT_POSITION_PRECEDING;
+
+class CompactDocumentTest {
+    private static final String XHTML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Strict//EN" "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd">
+            <html xmlns="http://www.w3.org/1999/xhtml" xmlns:svg="http://www.w3.org/2000/svg">
+              <head><title>A&amp;B</title><style>p { color: red } .x { background: blue }</style></head>
+              <body>
+                <!-- a comment -->
+                <p class="x" id="first">one&nbsp;two <![CDATA[<three>]]> four</p>
+                <p style="height: 20px"><b>bold</b> and <i>italic</i></p>
+                <svg:svg width="10"><svg:rect svg:x="1"/></svg:svg>
+              </body>
+            </html>
+            """;
+
+    @Test
+    void buildsTheSameTreeAsXMLResource() throws Exception {
+        assertThat(compact(XHTML).isEqualNode(XMLResource.load(XHTML).getDocument())).isTrue();
+    }
+
+    @Test
+    void navigatesTheTree() throws Exception {
+        CompactDocument document = compact(XHTML);
+        CompactElement html = document.getDocumentElement();
+
+        assertThat(document.getElementCount()).isEqualTo(11);
+        assertThat(html.getElementIndex()).isZero();
+        assertThat(html.getOwnerDocument()).isSameAs(document);
+        assertThat(html.getParentNode()).isSameAs(document);
+        assertThat(html.lookupNamespaceURI("svg")).isEqualTo("http://www.w3.org/2000/svg");
+        assertThat(html.lookupNamespaceURI(null)).isEqualTo("http://www.w3.org/1999/xhtml");
+
+        NodeList paragraphs = document.getElementsByTagName("p");
+        assertThat(paragraphs.getLength()).isEqualTo(2);
+        Element first = (Element) paragraphs.item(0);
+        Element second = (Element) paragraphs.item(1);
+        assertThat(document.getElementById("first")).isSameAs(first);
+        assertThat(first.getTextContent()).isEqualTo("one\u00a0two <three> four");
+        assertThat(first.getPreviousSibling().getNodeType()).isEqualTo(Node.COMMENT_NODE);
+        assertThat(first.getNextSibling()).isSameAs(second);
+        assertThat(second.getTextContent()).isEqualTo("bold and italic");
+        assertThat(second.getFirstChild().getNodeName()).isEqualTo("b");
+        assertThat(second.getLastChild().getNodeName()).isEqualTo("i");
+        assertThat(second.getLastChild().getNextSibling()).isNull();
+        assertThat(second.getChildNodes().item(1).getNodeValue()).isEqualTo(" and ");
+        assertThat(first.compareDocumentPosition(second)).isEqualTo(DOCUMENT_POSITION_FOLLOWING);
+        assertThat(second.compareDocumentPosition(first)).isEqualTo(DOCUMENT_POSITION_PRECEDING);
+        assertThat(html.compareDocumentPosition(second) & DOCUMENT_POSITION_CONTAINED_BY).isNotZero();
+
+        NamedNodeMap attributes = first.getAttributes();
+        assertThat(attributes.getLength()).isEqualTo(2);
+        Attr id = (Attr) attributes.getNamedItem("id");
+        assertThat(id.getValue()).isEqualTo("first");
+        assertThat(id.getOwnerElement()).isSameAs(first);
+        assertThat(id.isSameNode(first.getAttributeNode("id"))).isTrue();
+        assertThat(first.getAttribute("missing")).isEmpty();
+
+        Element rect = (Element) document.getElementsByTagNameNS("http://www.w3.org/2000/svg", "rect").item(0);
+        assertThat(rect.getTagName()).isEqualTo("svg:rect");
+        assertThat(rect.getLocalName()).isEqualTo("rect");
+        assertThat(rect.getAttributeNS("http://www.w3.org/2000/svg", "x")).isEqualTo("1");
+        assertThat(rect.lookupPrefix("http://www.w3.org/2000/svg")).isEqualTo("svg");
+    }
+
+    @Test
+    void sharesNames() throws Exception {
+        NodeList paragraphs = compact(XHTML).getElementsByTagName("p");
+
+        assertThat(((CompactElement) paragraphs.item(0)).name).isSameAs(((CompactElement) paragraphs.item(1)).name);
+    }
+
+    @Test
+    void cannotBeModified() throws Exception {
+        CompactDocument document = compact(XHTML);
+        Element html = document.getDocumentElement();
+
+        assertThatThrownBy(() -> html.setAttribute("class", "x"))
+                .isInstanceOfSatisfying(DOMException.class,
+                        e -> assertThat(e.code).isEqualTo(DOMException.NO_MODIFICATION_ALLOWED_ERR));
+        assertThatThrownBy(() -> html.appendChild(html.getFirstChild())).isInstanceOf(DOMException.class);
+        assertThatThrownBy(() -> document.createElement("p")).isInstanceOf(DOMException.class);
+        assertThatThrownBy(() -> html.getFirstChild().setNodeValue("x")).isInstanceOf(DOMException.class);
+    }
+
+    @Test
+    void rendersLikeTheJdkDom() throws Exception {
+        BufferedImage expected = new Java2DRenderer(XMLResource.load(XHTML).getDocument(), 200, 150).getImage();
+        BufferedImage actual = new Java2DRenderer(compact(XHTML), 200, 150).getImage();
+
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertThat(actual.getRGB(x, y)).as("pixel %s,%s", x, y).isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+
+    private static CompactDocument compact(String xml) throws Exception {
+        XMLReader xmlReader = XMLResource.newXMLReader();
+        xmlReader.setFeature("http://xml.org/sax/features/namespaces", true);
+        xmlReader.setEntityResolver(FSEntityResolver.instance());
+        CompactDOMBuilder builder = new CompactDOMBuilder();
+        xmlReader.setContentHandler(builder);
+        xmlReader.setProperty("http://xml.org/sax/properties/lexical-handler", builder);
+        xmlReader.parse(new InputSource(new StringReader(xml)));
+        return builder.takeDocument();
+    }
+}
@@ -0,0 +1,94 @@
+package org.xhtmlrenderer.layout;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.constants.IdentValue;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.css.style.EmptyStyle;
+import org.xhtmlrenderer.dom.CompactDOMBuilder;
+import org.xhtmlrenderer.dom.CompactDocument;
+import org.xhtmlrenderer.extend.UserInterface;
+import org.xhtmlrenderer.resource.XMLResource;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactStyleMapTest {
+    private static final String HTML = "<html><body><p>one</p><p>two</p></body></html>";
+
+    @Test
+    void keepsTheStylesOfTheElementsOfItsDocument() throws Exception {
+        CompactDocument document = compact(HTML);
+        Element body = (Element) document.getElementsByTagName("body").item(0);
+        Element p = (Element) document.getElementsByTagName("p").item(1);
+        CompactStyleMap styles = new CompactStyleMap(document);
+        CalculatedStyle style = new EmptyStyle();
+
+        assertThat(styles.put(p, style)).isNull();
+        assertThat(styles.get(p)).isSameAs(style);
+        assertThat(styles.containsKey(body)).isFalse();
+        assertThat(styles).hasSize(1).containsEntry(p, style);
+
+        assertThat(styles.remove(p)).isSameAs(style);
+        assertThat(styles).isEmpty();
+    }
+
+    @Test
+    void keepsTheStylesOfOtherElementsApart() throws Exception {
+        CompactStyleMap styles = new CompactStyleMap(compact(HTML));
+        Element other = compact(HTML).getDocumentElement();
+        Element jdkElement = XMLResource.load(HTML).getDocument().getDocumentElement();
+        CalculatedStyle style = new EmptyStyle();
+
+        styles.put(other, style);
+        styles.put(jdkElement, style);
+
+        assertThat(styles.get(other)).isSameAs(style);
+        assertThat(styles.get(jdkElement)).isSameAs(style);
+        assertThat(styles).hasSize(2);
+    }
+
+    @Test
+    void isUsedByTheContextForCompactDocuments() throws Exception {
+        CompactDocument document = compact(HTML);
+        SharedContext context = new SharedContext();
+        context.getCss().setDocumentContext(context, new XhtmlNamespaceHandler(), document, new NoUserInterface());
+        Element p = (Element) document.getElementsByTagName("p").item(0);
+
+        CalculatedStyle style = context.getStyle(p);
+
+        assertThat(context.getStyle(p)).isSameAs(style);
+        assertThat(style.isIdent(CSSName.DISPLAY, IdentValue.BLOCK)).isTrue();
+    }
+
+    private static CompactDocument compact(String xml) throws Exception {
+        XMLReader xmlReader = XMLResource.newXMLReader();
+        xmlReader.setFeature("http://xml.org/sax/features/namespaces", true);
+        CompactDOMBuilder builder = new CompactDOMBuilder();
+        xmlReader.setContentHandler(builder);
+        xmlReader.parse(new InputSource(new StringReader(xml)));
+        return builder.takeDocument();
+    }
+
+    private static class NoUserInterface implements UserInterface {
+        @Override
+        public boolean isHover(Element e) {
+            return false;
+        }
+
+        @Override
+        public boolean isActive(Element e) {
+            return false;
+        }
+
+        @Override
+        public boolean isFocus(Element e) {
+            return false;
+        }
+    }
+}
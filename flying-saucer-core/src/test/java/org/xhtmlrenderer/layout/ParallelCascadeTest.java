@@ -0,0 +1,116 @@
+package org.xhtmlrenderer.layout;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.css.style.CalculatedStyle;
+import org.xhtmlrenderer.extend.UserInterface;
+import org.xhtmlrenderer.simple.extend.XhtmlNamespaceHandler;
+import org.xhtmlrenderer.swing.NaiveUserAgent;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelCascadeTest {
+    private static final List<CSSName> PROPERTIES = List.of(
+            CSSName.COLOR, CSSName.DISPLAY, CSSName.FONT_WEIGHT, CSSName.MARGIN_LEFT,
+            CSSName.BACKGROUND_COLOR, CSSName.TEXT_ALIGN);
+
+    @Test
+    void computesTheSameStylesAsTheLazyCascade() throws Exception {
+        Document doc = parse(document());
+        SharedContext serial = context(doc);
+        SharedContext parallel = context(doc);
+        Map<Element, CalculatedStyle> styles = new ConcurrentHashMap<>();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelCascade.run(parallel.getCss(), doc.getDocumentElement(), styles, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        NodeList elements = doc.getElementsByTagName("*");
+        assertThat(styles).hasSize(elements.getLength());
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            CalculatedStyle expected = serial.getStyle(element);
+            CalculatedStyle actual = styles.get(element);
+            for (CSSName property : PROPERTIES) {
+                assertThat(actual.valueByName(property).asString())
+                        .as("%s of %s #%s", property, element.getTagName(), i)
+                        .isEqualTo(expected.valueByName(property).asString());
+            }
+        }
+    }
+
+    @Test
+    void leavesSmallDocumentsToTheLazyCascade() throws Exception {
+        Document doc = parse("<html><body><p>x</p></body></html>");
+        Map<Element, CalculatedStyle> styles = new ConcurrentHashMap<>();
+
+        ParallelCascade.run(context(doc).getCss(), doc.getDocumentElement(), styles, ForkJoinPool.commonPool());
+
+        assertThat(styles).isEmpty();
+    }
+
+    private static String document() {
+        StringBuilder html = new StringBuilder("""
+                <html><head><style>
+                  body { color: #333 }
+                  li:nth-child(odd) { background-color: #eee }
+                  li.done { text-decoration: line-through; color: gray }
+                  .section > h2 { font-weight: normal }
+                  ul li span { margin-left: 4px }
+                  #s3 li { text-align: right }
+                </style></head><body>
+                """);
+        for (int s = 0; s < 20; s++) {
+            html.append("<div class='section' id='s").append(s).append("'><h2>Section ").append(s).append("</h2><ul>");
+            for (int i = 0; i < 40; i++) {
+                html.append("<li").append(i % 3 == 0 ? " class='done'" : "")
+                        .append(i % 7 == 0 ? " style='font-weight: bold'" : "")
+                        .append("><span>item</span> <b>").append(i).append("</b></li>");
+            }
+            html.append("</ul></div>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static SharedContext context(Document doc) {
+        NaiveUserAgent userAgent = new NaiveUserAgent();
+        SharedContext context = new SharedContext(userAgent);
+        context.getCss().setDocumentContext(context, new XhtmlNamespaceHandler(), doc, new NoUserInterface());
+        return context;
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static class NoUserInterface implements UserInterface {
+        @Override
+        public boolean isHover(Element e) {
+            return false;
+        }
+
+        @Override
+        public boolean isActive(Element e) {
+            return false;
+        }
+
+        @Override
+        public boolean isFocus(Element e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.xhtmlrenderer.resource;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FSEntityResolverTest {
+    private static final String XHTML_STRICT = "-//W3C//DTD XHTML 1.0 Strict//EN";
+    private static final String XHTML_STRICT_URI = "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd";
+
+    private final FSEntityResolver resolver = FSEntityResolver.instance();
+
+    @Test
+    void servesLocalDtdsFromMemory() throws Exception {
+        InputSource first = resolver.resolveEntity(XHTML_STRICT, XHTML_STRICT_URI);
+        InputSource second = resolver.resolveEntity(XHTML_STRICT, XHTML_STRICT_URI);
+
+        assertThat(first.getSystemId()).endsWith("xhtml1-strict.dtd").isEqualTo(second.getSystemId());
+        assertThat(first.getByteStream()).isNotSameAs(second.getByteStream());
+        byte[] content = first.getByteStream().readAllBytes();
+        assertThat(new String(content, UTF_8)).contains("<!ENTITY % HTMLlat1 PUBLIC");
+        assertThat(second.getByteStream().readAllBytes()).isEqualTo(content);
+    }
+
+    @Test
+    void servesTheHtml5EntitiesFromMemory() throws Exception {
+        InputSource subset = resolver.getExternalSubset("html", "about:blank");
+
+        assertThat(subset).isNotNull();
+        assertThat(subset.getSystemId()).endsWith("html5/entities.dtd");
+        assertThat(new String(subset.getByteStream().readAllBytes(), UTF_8)).contains("nbsp");
+    }
+
+    @Test
+    void replacesUnknownEntitiesWithNothing() throws Exception {
+        InputSource source = resolver.resolveEntity("-//Unknown//DTD Nothing//EN", "http://example.com/nothing.dtd");
+
+        assertThat(source.getCharacterStream().read()).isEqualTo(-1);
+    }
+}
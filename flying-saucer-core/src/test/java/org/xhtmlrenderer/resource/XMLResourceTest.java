@@ -0,0 +1,101 @@
+package org.xhtmlrenderer.resource;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXSource;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.w3c.dom.Node.COMMENT_NODE;
+import static org.w3c.dom.Node.PROCESSING_INSTRUCTION_NODE;
+
+class XMLResourceTest {
+    private static final String XHTML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Strict//EN" "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd">
+            <?xml-stylesheet href="style.css"?>
+            <html xmlns="http://www.w3.org/1999/xhtml" xmlns:svg="http://www.w3.org/2000/svg" xml:lang="en">
+              <head><title>A&amp;B</title></head>
+              <body>
+                <!-- a comment -->
+                <p class="x">one&nbsp;two <![CDATA[<three>]]> four</p>
+                <svg:svg width="10"><svg:rect svg:x="1"/></svg:svg>
+              </body>
+            </html>
+            """;
+
+    @Test
+    void buildsTheSameDocumentAsAnIdentityTransform() throws Exception {
+        Document document = XMLResource.load(XHTML).getDocument();
+        Document transformed = transform(XHTML);
+        removeComments(transformed);
+
+        assertThat(document.isEqualNode(transformed)).isTrue();
+    }
+
+    @Test
+    void leavesOutTheCommentsOfTheDtd() throws Exception {
+        Document transformed = transform(XHTML);
+        assertThat(transformed.getFirstChild().getNodeType()).isEqualTo(COMMENT_NODE);
+
+        Document document = XMLResource.load(XHTML).getDocument();
+        assertThat(document.getChildNodes().getLength()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsNamespacesCommentsAndProcessingInstructions() {
+        Document document = XMLResource.load(XHTML).getDocument();
+
+        assertThat(document.getFirstChild().getNodeType()).isEqualTo(PROCESSING_INSTRUCTION_NODE);
+        Element html = document.getDocumentElement();
+        assertThat(html.getNamespaceURI()).isEqualTo("http://www.w3.org/1999/xhtml");
+        assertThat(html.getAttribute("xmlns:svg")).isEqualTo("http://www.w3.org/2000/svg");
+        assertThat(html.getAttributeNS("http://www.w3.org/XML/1998/namespace", "lang")).isEqualTo("en");
+
+        Element p = (Element) document.getElementsByTagName("p").item(0);
+        assertThat(p.getTextContent()).isEqualTo("one\u00a0two <three> four");
+        assertThat(p.getChildNodes().getLength()).isEqualTo(1);
+        assertThat(p.getPreviousSibling().getNodeType()).isEqualTo(COMMENT_NODE);
+
+        Element rect = (Element) document.getElementsByTagNameNS("http://www.w3.org/2000/svg", "rect").item(0);
+        assertThat(rect.getPrefix()).isEqualTo("svg");
+        assertThat(rect.getAttributeNS("http://www.w3.org/2000/svg", "x")).isEqualTo("1");
+    }
+
+    @Test
+    void reportsTheLoadTime() {
+        XMLResource resource = XMLResource.load("<html><body/></html>");
+
+        assertThat(resource.getElapsedLoadTime()).isNotNegative();
+        assertThat(resource.getDocument().getDocumentElement().getTagName()).isEqualTo("html");
+    }
+
+    private static void removeComments(Document document) {
+        for (Node child = document.getFirstChild(); child != null; ) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == COMMENT_NODE) {
+                document.removeChild(child);
+            }
+            child = next;
+        }
+    }
+
+    private static Document transform(String xml) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader xmlReader = factory.newSAXParser().getXMLReader();
+        xmlReader.setEntityResolver(FSEntityResolver.instance());
+        DOMResult result = new DOMResult();
+        TransformerFactory.newInstance().newTransformer()
+                .transform(new SAXSource(xmlReader, new InputSource(new StringReader(xml))), result);
+        return (Document) result.getNode();
+    }
+}
@@ -24,13 +24,22 @@ class XhtmlCssOnlyNamespaceHandlerTest {
     void readsAllCssStyles() throws IOException, ParserConfigurationException, SAXException {
         List<StylesheetInfo> stylesheets = handler.getStylesheets(read("/hello.css.html"));
         assertThat(stylesheets).hasSize(2);
-        assertThat(stylesheets.get(0).getUri()).matches("inline:\\d+");
+        assertThat(stylesheets.get(0).getUri()).matches("inline:[0-9a-f]{64}");
         assertThat(stylesheets.get(0).getMedia()).containsExactly("all");
         assertThat(stylesheets.get(0).getOrigin()).isEqualTo(AUTHOR);
         assertThat(stylesheets.get(0).getContent()).contains("body {color: black;}");
         assertThat(stylesheets.get(1).getContent()).contains("h1 {color: red;}");
     }
 
+    @Test
+    void namesEmbeddedStylesheetsAfterTheirContentAndMedia() {
+        String uri = XhtmlCssOnlyNamespaceHandler.inlineUri("print", "h1 {color: red;}");
+
+        assertThat(XhtmlCssOnlyNamespaceHandler.inlineUri("print", "h1 {color: red;}")).isEqualTo(uri);
+        assertThat(XhtmlCssOnlyNamespaceHandler.inlineUri("screen", "h1 {color: red;}")).isNotEqualTo(uri);
+        assertThat(XhtmlCssOnlyNamespaceHandler.inlineUri("print", "h1 {color: blue;}")).isNotEqualTo(uri);
+    }
+
     @Test
     void fileWithoutCssStyles() throws IOException, ParserConfigurationException, SAXException {
         List<StylesheetInfo> stylesheets = handler.getStylesheets(read("/hello.html"));
@@ -0,0 +1,166 @@
+package org.xhtmlrenderer.swing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.css.constants.CSSName;
+import org.xhtmlrenderer.render.Box;
+import org.xhtmlrenderer.simple.XHTMLPanel;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HoverListenerTest {
+    private static final String DOCUMENT = """
+            <html><head><style>
+              #menu { position: absolute; left: 10px; top: 10px; width: 100px }
+              #menu p:hover { padding-top: 20px; color: red }
+              #side { float: left; width: 150px; height: 120px }
+              #inside:hover { margin-top: 30px }
+              #clip { overflow: hidden; height: 100px }
+              #clipped:hover { padding-top: 20px }
+              #open { overflow: hidden }
+              #plain:hover { color: blue }
+              #grow:hover { margin-top: 30px }
+              #bold:hover { font-weight: bold; border: 2px solid black }
+            </style></head><body>
+              <div id='menu'><p id='item'>Item</p></div>
+              <div id='side'><p id='inside'>Inside</p><p id='after'>After</p></div>
+              <div id='clip'><p id='clipped'>Clipped</p><p id='below'>Below</p></div>
+              <div id='open'><p id='bold'>Bold</p></div>
+              <p id='plain'>Plain</p>
+              <p id='grow'>Grow</p>
+            </body></html>
+            """;
+
+    private final HoverListener listener = new HoverListener();
+    private XHTMLPanel panel;
+
+    @BeforeEach
+    void layOut() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(DOCUMENT)));
+        panel = new XHTMLPanel();
+        panel.setInteractive(false);
+        panel.setDocument(doc, "");
+        panel.setSize(new Dimension(400, 300));
+        layOutDocument();
+    }
+
+    private void layOutDocument() {
+        Graphics2D g = new BufferedImage(400, 300, TYPE_INT_ARGB).createGraphics();
+        try {
+            panel.doDocumentLayout(g);
+        } finally {
+            g.dispose();
+        }
+        panel.setNeedRelayout(false);
+    }
+
+    @Test
+    void repaintsWhenOnlyColorsChange() {
+        Box plain = box("plain");
+        int height = plain.getHeight();
+
+        listener.onMouseOver(panel, plain);
+
+        assertThat(plain.getStyle().asColor(CSSName.COLOR).toString()).isEqualTo("#0000ff");
+        assertThat(plain.getHeight()).isEqualTo(height);
+        assertThat(panel.isNeedRelayout()).isFalse();
+    }
+
+    @Test
+    void laysOutOnlyTheAbsolutelyPositionedBlockAroundTheHoveredBox() {
+        Box item = box("item");
+        Box menu = box("menu");
+        int height = menu.getHeight();
+        int absY = menu.getAbsY();
+
+        listener.onMouseOver(panel, item);
+
+        assertThat(panel.isNeedRelayout()).isFalse();
+        assertThat(item.getStyle().asColor(CSSName.COLOR).toString()).isEqualTo("#ff0000");
+        assertThat(menu.getHeight()).isEqualTo(height + 20);
+        assertThat(menu.getAbsY()).isEqualTo(absY);
+        assertThat(panel.getRootLayer().getChildren()).containsExactly(menu.getLayer());
+
+        listener.onMouseOver(panel, menu);
+
+        assertThat(menu.getHeight()).isEqualTo(height);
+    }
+
+    @Test
+    void laysOutTheFloatAroundTheHoveredBoxInPlace() {
+        Box side = box("side");
+        Box after = box("after");
+        int sideAbsY = side.getAbsY();
+        int absY = after.getAbsY();
+        int plainAbsY = box("plain").getAbsY();
+
+        listener.onMouseOver(panel, box("inside"));
+
+        assertThat(panel.isNeedRelayout()).isFalse();
+        assertThat(after.getAbsY()).isGreaterThan(absY);
+        assertThat(side.getAbsY()).isEqualTo(sideAbsY);
+        assertThat(box("plain").getAbsY()).isEqualTo(plainAbsY);
+
+        listener.onMouseOver(panel, after);
+
+        assertThat(panel.isNeedRelayout()).isFalse();
+        assertThat(after.getAbsY()).isEqualTo(absY);
+
+        listener.onMouseOver(panel, box("inside"));
+        int laidOutAbsY = after.getAbsY();
+        layOutDocument();
+        assertThat(box("after").getAbsY()).isEqualTo(laidOutAbsY);
+    }
+
+    @Test
+    void laysOutTheBlockHidingItsOverflowAroundTheHoveredBoxInPlace() {
+        Box clip = box("clip");
+        Box clipped = box("clipped");
+        Box below = box("below");
+        int height = clip.getHeight();
+        int clippedHeight = clipped.getHeight();
+        int absY = below.getAbsY();
+
+        listener.onMouseOver(panel, clipped);
+
+        assertThat(panel.isNeedRelayout()).isFalse();
+        assertThat(clipped.getHeight()).isEqualTo(clippedHeight + 20);
+        assertThat(below.getAbsY()).isEqualTo(absY + 20);
+        assertThat(clip.getHeight()).isEqualTo(height);
+        layOutDocument();
+        assertThat(box("below").getAbsY()).isEqualTo(absY + 20);
+    }
+
+    @Test
+    void laysOutTheDocumentWhenTheBlockAroundTheHoveredBoxChangesItsHeight() {
+        Box bold = box("bold");
+
+        listener.onMouseOver(panel, bold);
+
+        assertThat(panel.isNeedRelayout()).isTrue();
+        assertThat(bold.getStyle().asString(CSSName.FONT_WEIGHT)).isEqualTo("bold");
+    }
+
+    @Test
+    void laysOutTheDocumentWhenNoBlockAroundTheHoveredBoxEstablishesAFormattingContext() {
+        Box grow = box("grow");
+
+        listener.onMouseOver(panel, grow);
+
+        assertThat(panel.isNeedRelayout()).isTrue();
+        assertThat(grow.getStyle().asString(CSSName.MARGIN_TOP)).isEqualTo("30px");
+    }
+
+    private Box box(String id) {
+        return panel.getSharedContext().getBoxById(id);
+    }
+}